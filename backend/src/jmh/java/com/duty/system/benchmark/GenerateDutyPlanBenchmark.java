@@ -0,0 +1,97 @@
+package com.duty.system.benchmark;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.User;
+import com.duty.system.service.impl.DutyServiceImpl;
+import com.duty.system.service.impl.InMemoryChangeBus;
+import com.duty.system.service.impl.PlanRangeLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DutyServiceImpl.generateDutyPlan基准测试，仓库替换为内存实现，只测排班引擎本身
+ * 运行：mvn -Pjmh test-compile exec:exec
+ * 指定参数：mvn -Pjmh test-compile exec:exec -Djmh.args="GenerateDutyPlan -p users=500 -p days=365 -prof gc"
+ * Throughput给出ops/s，SampleTime给出p99等分位延迟，-prof gc给出分配速率
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class GenerateDutyPlanBenchmark {
+
+    private static final LocalDate START_DATE = LocalDate.of(2025, 1, 1);
+
+    @Param({"50", "500", "5000"})
+    private int users;
+
+    @Param({"30", "365", "1095"})
+    private int days;
+
+    // 在排班范围内有请假的用户比例
+    @Param({"0.1"})
+    private double leaveDensity;
+
+    private DutyServiceImpl dutyService;
+    private Date startDate;
+    private Date endDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<User> roster = SyntheticRoster.users(users, START_DATE, days, leaveDensity, 42L);
+
+        DutyProperties properties = new DutyProperties();
+        properties.getLock().setDistributed(false);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PlanRangeLock planRangeLock = new PlanRangeLock();
+        ReflectionTestUtils.setField(planRangeLock, "dutyProperties", properties);
+        ReflectionTestUtils.setField(planRangeLock, "meterRegistry", meterRegistry);
+        planRangeLock.init();
+
+        dutyService = new DutyServiceImpl();
+        ReflectionTestUtils.setField(dutyService, "userRepository", InMemoryRepositories.users(roster));
+        ReflectionTestUtils.setField(dutyService, "timeSlotRepository", InMemoryRepositories.timeSlots(SyntheticRoster.timeSlots()));
+        ReflectionTestUtils.setField(dutyService, "dutyPlanRepository", InMemoryRepositories.dutyPlans());
+        ReflectionTestUtils.setField(dutyService, "configRepository", InMemoryRepositories.configs());
+        ReflectionTestUtils.setField(dutyService, "generationRunRepository", InMemoryRepositories.generationRuns());
+        ReflectionTestUtils.setField(dutyService, "workloadStatRepository", InMemoryRepositories.workloadStats());
+        ReflectionTestUtils.setField(dutyService, "leaveRepository", InMemoryRepositories.leaves());
+        ReflectionTestUtils.setField(dutyService, "planRangeLock", planRangeLock);
+        ReflectionTestUtils.setField(dutyService, "transactionTemplate", InMemoryRepositories.transactionTemplate());
+        ReflectionTestUtils.setField(dutyService, "dutyProperties", properties);
+        ReflectionTestUtils.setField(dutyService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(dutyService, "changeBus", new InMemoryChangeBus("benchmark"));
+        dutyService.initSegmentPool();
+        dutyService.subscribeChanges();
+
+        ZoneId zone = ZoneId.systemDefault();
+        startDate = Date.from(START_DATE.atStartOfDay(zone).toInstant());
+        endDate = Date.from(START_DATE.plusDays(days - 1).atStartOfDay(zone).toInstant());
+    }
+
+    @Benchmark
+    public List<DutyPlan> generateDutyPlan() {
+        return dutyService.generateDutyPlan(startDate, endDate);
+    }
+}
@@ -0,0 +1,166 @@
+package com.duty.system.benchmark;
+
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.TimeSlot;
+import com.duty.system.entity.User;
+import com.duty.system.repository.ConfigRepository;
+import com.duty.system.repository.DutyPlanRepository;
+import com.duty.system.repository.GenerationRunRepository;
+import com.duty.system.repository.LeaveRepository;
+import com.duty.system.repository.TimeSlotRepository;
+import com.duty.system.repository.UserRepository;
+import com.duty.system.repository.WorkloadStatRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于动态代理的内存仓库，只实现排班生成用到的方法，其余方法抛出UnsupportedOperationException
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    static UserRepository users(List<User> users) {
+        return proxy(UserRepository.class, (name, args) -> {
+            if ("findAll".equals(name) && args == null) {
+                return new ArrayList<>(users);
+            }
+            return unsupported(name);
+        });
+    }
+
+    static TimeSlotRepository timeSlots(List<TimeSlot> timeSlots) {
+        return proxy(TimeSlotRepository.class, (name, args) -> {
+            if ("findByStatus".equals(name) || ("findAll".equals(name) && args == null)) {
+                return new ArrayList<>(timeSlots);
+            }
+            return unsupported(name);
+        });
+    }
+
+    static ConfigRepository configs() {
+        return proxy(ConfigRepository.class, (name, args) -> {
+            if ("findByConfigKey".equals(name)) {
+                return Optional.empty();
+            }
+            if ("findAll".equals(name) && args == null) {
+                return new ArrayList<>();
+            }
+            return unsupported(name);
+        });
+    }
+
+    /**
+     * 不保存数据的排班仓库，插入时只分配自增id，删除直接返回
+     */
+    @SuppressWarnings("unchecked")
+    static DutyPlanRepository dutyPlans() {
+        AtomicLong sequence = new AtomicLong();
+        return proxy(DutyPlanRepository.class, (name, args) -> {
+            switch (name) {
+                case "batchInsert": {
+                    List<DutyPlan> plans = (List<DutyPlan>) args[0];
+                    List<Long> ids = new ArrayList<>(plans.size());
+                    for (DutyPlan plan : plans) {
+                        plan.setId(sequence.incrementAndGet());
+                        ids.add(plan.getId());
+                    }
+                    return ids;
+                }
+                case "saveAll":
+                    return new ArrayList<>((List<DutyPlan>) args[0]);
+                case "deleteByDateRange":
+                    return 0;
+                case "countWorkloadByDateRange":
+                    return new ArrayList<Object[]>();
+                default:
+                    return unsupported(name);
+            }
+        });
+    }
+
+    static GenerationRunRepository generationRuns() {
+        return proxy(GenerationRunRepository.class, (name, args) -> {
+            if ("save".equals(name)) {
+                return args[0];
+            }
+            if ("deleteCoveredBy".equals(name)) {
+                return 0;
+            }
+            return unsupported(name);
+        });
+    }
+
+    static LeaveRepository leaves() {
+        return proxy(LeaveRepository.class, (name, args) -> {
+            if ("findOverlapping".equals(name)) {
+                return new ArrayList<>();
+            }
+            return unsupported(name);
+        });
+    }
+
+    static WorkloadStatRepository workloadStats() {
+        return proxy(WorkloadStatRepository.class, (name, args) -> {
+            if ("addCounts".equals(name)) {
+                return null;
+            }
+            return unsupported(name);
+        });
+    }
+
+    /**
+     * 不连接数据库的事务模板，回调直接执行
+     */
+    static TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        });
+    }
+
+    private static Object unsupported(String name) {
+        throw new UnsupportedOperationException(name);
+    }
+
+    private interface Handler {
+        Object invoke(String methodName, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    default:
+                        return type.getSimpleName() + "(in-memory)";
+                }
+            }
+            return handler.invoke(method.getName(), args);
+        });
+        return type.cast(proxy);
+    }
+}
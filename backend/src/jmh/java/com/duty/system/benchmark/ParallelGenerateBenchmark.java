@@ -0,0 +1,86 @@
+package com.duty.system.benchmark;
+
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.service.impl.DutyPlanGenerator;
+import com.duty.system.service.impl.RosterSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排班引擎顺序生成与按周期分段并行生成的对比
+ * Setup阶段先校验两种方式生成的排班完全一致（不一致时直接失败），再分别测量耗时
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="ParallelGenerate -p users=5000 -p days=1095"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ParallelGenerateBenchmark {
+
+    private static final LocalDate START_DATE = LocalDate.of(2025, 1, 1);
+
+    @Param({"500", "5000"})
+    private int users;
+
+    @Param({"365", "1095"})
+    private int days;
+
+    @Param({"0.1"})
+    private double leaveDensity;
+
+    // 每个分段包含的9天周期数
+    @Param({"1", "4"})
+    private int segmentCycles;
+
+    private DutyPlanGenerator generator;
+    private LocalDate endDate;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new DutyPlanGenerator(RosterSnapshot.of(SyntheticRoster.users(users, START_DATE, days, leaveDensity, 42L),
+                ZoneId.systemDefault()), 1L, 2L);
+        endDate = START_DATE.plusDays(days - 1);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        List<DutyPlan> sequential = sequential();
+        List<DutyPlan> parallel = parallel();
+        if (!sequential.equals(parallel)) {
+            throw new IllegalStateException("并行生成结果与顺序生成不一致: " + sequential.size() + " / " + parallel.size());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public List<DutyPlan> sequential() {
+        return generator.generate(START_DATE, endDate);
+    }
+
+    @Benchmark
+    public List<DutyPlan> parallel() {
+        return generator.generateParallel(START_DATE, endDate, segmentCycles, pool, null);
+    }
+}
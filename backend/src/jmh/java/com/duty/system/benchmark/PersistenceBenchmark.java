@@ -0,0 +1,201 @@
+package com.duty.system.benchmark;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.config.PersistenceTuningConfig;
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.repository.DutyPlanRepositoryImpl;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 默认驱动参数与生产调优参数（PersistenceTuningConfig）下的数据库吞吐对比：
+ * 排班批量插入（DutyPlanRepositoryImpl.batchInsert）、按日期顺序流式读取、按主键的单行查询
+ * 需要一个可写的MySQL，默认连接本机的duty_benchmark库（不存在时自动创建），其中的duty_plan表会被清空
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="Persistence -p rows=10000"
+ * 连接其他库：设置环境变量DUTY_BENCH_URL、DUTY_BENCH_USER、DUTY_BENCH_PASSWORD
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/duty_benchmark?useUnicode=true"
+            + "&characterEncoding=utf-8&useSSL=false&serverTimezone=Asia/Shanghai&createDatabaseIfNotExist=true";
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS duty_plan ("
+            + "id BIGINT NOT NULL AUTO_INCREMENT, assigned_sub_group_id INT, date DATETIME(6) NOT NULL, "
+            + "duty_group_id INT, duty_sub_group_id INT, status INT NOT NULL, time_slot_id BIGINT NOT NULL, "
+            + "type INT NOT NULL, user_id BIGINT NOT NULL, PRIMARY KEY (id), "
+            + "KEY idx_duty_plan_date_type_status (date, type, status), KEY idx_duty_plan_user_date (user_id, date))";
+
+    // 一次单行查询基准中执行的查询次数
+    private static final int LOOKUPS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        // defaults: application.properties中的连接参数；tuned: 加上生产环境的驱动参数
+        @Param({"defaults", "tuned"})
+        public String driver;
+
+        // 每次批量插入和流式读取的行数
+        @Param({"10000"})
+        public int rows;
+
+        HikariDataSource dataSource;
+        DutyPlanRepositoryImpl repository;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(env("DUTY_BENCH_URL", DEFAULT_URL));
+            config.setUsername(env("DUTY_BENCH_USER", "root"));
+            config.setPassword(env("DUTY_BENCH_PASSWORD", "123456"));
+            config.setMaximumPoolSize(2);
+            if ("tuned".equals(driver)) {
+                PersistenceTuningConfig.applyMysqlDriverProperties(config, new DutyProperties.Persistence());
+            }
+            dataSource = new HikariDataSource(config);
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE_SQL);
+            }
+
+            repository = new DutyPlanRepositoryImpl();
+            ReflectionTestUtils.setField(repository, "jdbcTemplate", new JdbcTemplate(dataSource));
+            ReflectionTestUtils.setField(repository, "dutyProperties", new DutyProperties());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dataSource.close();
+        }
+
+        void truncate() throws SQLException {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("TRUNCATE TABLE duty_plan");
+            }
+        }
+
+        // 按天依次生成排班，每天40条，与实际生成结果的行宽和日期分布接近
+        List<DutyPlan> newPlans() {
+            List<DutyPlan> plans = new ArrayList<>(rows);
+            long day = TimeUnit.DAYS.toMillis(1);
+            long start = 1735660800000L;
+            for (int i = 0; i < rows; i++) {
+                DutyPlan plan = new DutyPlan();
+                plan.setUserId((long) (i % 40 + 1));
+                plan.setDate(new Date(start + (i / 40) * day));
+                plan.setTimeSlotId(i % 40 < 2 ? 2L : 1L);
+                plan.setType(i % 40 < 2 ? 3 : 1);
+                plan.setAssignedSubGroupId(i % 3 + 1);
+                plan.setStatus(1);
+                plans.add(plan);
+            }
+            return plans;
+        }
+
+        private static String env(String name, String defaultValue) {
+            String value = System.getenv(name);
+            return value != null && !value.isEmpty() ? value : defaultValue;
+        }
+    }
+
+    // 每次插入前清空表，插入的计划每次重新创建（id为空）
+    @State(Scope.Benchmark)
+    public static class EmptyTable {
+        List<DutyPlan> plans;
+
+        @Setup(Level.Invocation)
+        public void setUp(Database database) throws SQLException {
+            database.truncate();
+            plans = database.newPlans();
+        }
+    }
+
+    // 读取基准使用的表，Trial开始时写入rows行
+    @State(Scope.Benchmark)
+    public static class FilledTable {
+        long maxId;
+
+        @Setup(Level.Trial)
+        public void setUp(Database database) throws SQLException {
+            database.truncate();
+            List<Long> ids = database.repository.batchInsert(database.newPlans());
+            maxId = ids.get(ids.size() - 1);
+        }
+    }
+
+    @Benchmark
+    public List<Long> batchInsert(Database database, EmptyTable table) {
+        return database.repository.batchInsert(table.plans);
+    }
+
+    @Benchmark
+    public long streamRead(Database database, FilledTable table, Blackhole blackhole) throws SQLException {
+        long count = 0;
+        try (Connection connection = database.dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "SELECT id, user_id, date, time_slot_id, type, assigned_sub_group_id, status, duty_group_id, "
+                             + "duty_sub_group_id FROM duty_plan ORDER BY date, id",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // 与DutyPlanRepositoryImpl.streamByDateRange一致，逐行读取
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    blackhole.consume(rs.getLong(1));
+                    blackhole.consume(rs.getTimestamp(3));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long lookupById(Database database, FilledTable table) throws SQLException {
+        long sum = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // 每次查询都重新借出连接并预编译，与JPA按主键查询的调用方式一致
+        for (int i = 0; i < LOOKUPS; i++) {
+            try (Connection connection = database.dataSource.getConnection();
+                 PreparedStatement ps = connection.prepareStatement(
+                         "SELECT id, user_id, date, type FROM duty_plan WHERE id = ?")) {
+                ps.setLong(1, random.nextLong(1, table.maxId + 1));
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        sum += rs.getLong(2);
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+}
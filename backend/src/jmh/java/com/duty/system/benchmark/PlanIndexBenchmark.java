@@ -0,0 +1,226 @@
+package com.duty.system.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * duty_plan在有无V2__duty_plan_indexes.sql中索引时的查询耗时：
+ * /plans按日期范围查一个月、按人员查一个月、增量修复时按类型查一个oncall周期的24小时班
+ * 表按10年、每天rows/3650条构造，在数据库内用INSERT ... SELECT生成，行数相同时复用已有的表
+ * indexes=migrated时执行db/migration下的V2脚本，none时删除这两个索引
+ * 需要一个可写的MySQL，默认连接本机的duty_index_benchmark库（不存在时自动创建），其中的duty_plan表会被重建
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="PlanIndex -p rows=1000000,10000000"
+ * 连接其他库：设置环境变量DUTY_BENCH_URL、DUTY_BENCH_USER、DUTY_BENCH_PASSWORD
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class PlanIndexBenchmark {
+
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/duty_index_benchmark?useUnicode=true"
+            + "&characterEncoding=utf-8&useSSL=false&serverTimezone=Asia/Shanghai&createDatabaseIfNotExist=true";
+
+    // 与Hibernate按DutyPlan建的表一致，不带二级索引
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE duty_plan ("
+            + "id BIGINT NOT NULL AUTO_INCREMENT, assigned_sub_group_id INT, date DATETIME(6) NOT NULL, "
+            + "duty_group_id INT, duty_sub_group_id INT, status INT NOT NULL, time_slot_id BIGINT NOT NULL, "
+            + "type INT NOT NULL, user_id BIGINT NOT NULL, PRIMARY KEY (id))";
+
+    private static final String[] INDEXES = {"idx_duty_plan_date_type_status", "idx_duty_plan_user_date"};
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int DAYS = 3650;
+
+    // 每条INSERT ... SELECT生成的行数
+    private static final int FILL_CHUNK = 1000000;
+
+    private static final String COLUMNS = "SELECT id, assigned_sub_group_id, date, duty_group_id, duty_sub_group_id, "
+            + "status, time_slot_id, type, user_id FROM duty_plan ";
+    // /plans（findByDateRange）
+    private static final String PLANS_SQL = COLUMNS + "WHERE date >= ? AND date < ? ORDER BY date, id";
+    // findByUserIdAndDateBetween
+    private static final String USER_PLANS_SQL = COLUMNS + "WHERE date >= ? AND date < ? AND user_id = ?";
+    // findByTypeAndDateGreaterThanEqualAndDateLessThan
+    private static final String DUTY_24H_SQL = "SELECT id, user_id, date FROM duty_plan "
+            + "WHERE type = 3 AND date >= ? AND date < ?";
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        @Param({"1000000"})
+        public int rows;
+
+        // none: 只有主键；migrated: 执行V2迁移脚本后
+        @Param({"none", "migrated"})
+        public String indexes;
+
+        HikariDataSource dataSource;
+        int perDay;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(env("DUTY_BENCH_URL", DEFAULT_URL));
+            config.setUsername(env("DUTY_BENCH_USER", "root"));
+            config.setPassword(env("DUTY_BENCH_PASSWORD", "123456"));
+            config.setMaximumPoolSize(2);
+            dataSource = new HikariDataSource(config);
+            perDay = rows / DAYS;
+
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                if (countRows(statement) != rows) {
+                    fill(statement);
+                }
+                for (String index : INDEXES) {
+                    if (hasIndex(statement, index)) {
+                        statement.execute("ALTER TABLE duty_plan DROP INDEX " + index);
+                    }
+                }
+                if ("migrated".equals(indexes)) {
+                    long started = System.nanoTime();
+                    ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V2__duty_plan_indexes.sql"));
+                    System.out.printf("%nV2迁移脚本在%d行上耗时 %d s%n", rows,
+                            TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+                }
+                statement.execute("ANALYZE TABLE duty_plan");
+                explain(connection, PLANS_SQL, 31);
+                explain(connection, USER_PLANS_SQL, 31);
+                explain(connection, DUTY_24H_SQL, 9);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dataSource.close();
+        }
+
+        private long countRows(Statement statement) throws SQLException {
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM information_schema.tables "
+                    + "WHERE table_schema = DATABASE() AND table_name = 'duty_plan'")) {
+                rs.next();
+                if (rs.getInt(1) == 0) {
+                    return -1;
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM duty_plan")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+
+        private boolean hasIndex(Statement statement, String index) throws SQLException {
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM information_schema.statistics "
+                    + "WHERE table_schema = DATABASE() AND table_name = 'duty_plan' AND index_name = '" + index + "'")) {
+                rs.next();
+                return rs.getInt(1) > 0;
+            }
+        }
+
+        // 第n行：第n / perDay天，用户n % perDay + 1，每天前两人上24小时班
+        private void fill(Statement statement) throws SQLException {
+            long started = System.nanoTime();
+            statement.execute("DROP TABLE IF EXISTS duty_plan");
+            statement.execute(CREATE_TABLE_SQL);
+            statement.execute("DROP TABLE IF EXISTS bench_digits");
+            statement.execute("CREATE TABLE bench_digits (d INT NOT NULL PRIMARY KEY)");
+            statement.execute("INSERT INTO bench_digits VALUES (0), (1), (2), (3), (4), (5), (6), (7), (8), (9)");
+            String numbers = "SELECT a.d + b.d * 10 + c.d * 100 + e.d * 1000 + f.d * 10000 + g.d * 100000 AS i "
+                    + "FROM bench_digits a, bench_digits b, bench_digits c, bench_digits e, bench_digits f, bench_digits g";
+            for (int offset = 0; offset < rows; offset += FILL_CHUNK) {
+                String n = "(t.i + " + offset + ")";
+                statement.execute("INSERT INTO duty_plan (assigned_sub_group_id, date, status, time_slot_id, type, user_id) "
+                        + "SELECT " + n + " % 3 + 1, TIMESTAMP('" + FIRST_DAY + "') + INTERVAL (" + n + " DIV " + perDay + ") DAY, 1, "
+                        + "IF(" + n + " % " + perDay + " < 2, 2, 1), IF(" + n + " % " + perDay + " < 2, 3, 1), "
+                        + n + " % " + perDay + " + 1 "
+                        + "FROM (" + numbers + ") t WHERE " + n + " < " + rows + " ORDER BY t.i");
+            }
+            statement.execute("DROP TABLE bench_digits");
+            System.out.printf("%n生成%d行耗时 %d s%n", rows, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+        }
+
+        private void explain(Connection connection, String sql, int days) throws SQLException {
+            try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+                bindRange(ps, FIRST_DAY.plusDays(DAYS / 2), days, 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        System.out.printf("EXPLAIN [%s] type=%s key=%s rows=%s extra=%s%n", sql.substring(sql.indexOf("WHERE")),
+                                rs.getString("type"), rs.getString("key"), rs.getString("rows"), rs.getString("Extra"));
+                    }
+                }
+            }
+        }
+
+        // 随机一段连续的日期[from, from + days)，按人员查询时再随机一个人
+        int query(String sql, int days) throws SQLException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            LocalDate from = FIRST_DAY.plusDays(random.nextInt(DAYS - days));
+            int count = 0;
+            try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
+                bindRange(ps, from, days, random.nextInt(perDay) + 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static void bindRange(PreparedStatement ps, LocalDate from, int days, long userId) throws SQLException {
+            ps.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(from.plusDays(days).atStartOfDay()));
+            if (ps.getParameterMetaData().getParameterCount() > 2) {
+                ps.setLong(3, userId);
+            }
+        }
+
+        private static String env(String name, String defaultValue) {
+            String value = System.getenv(name);
+            return value != null && !value.isEmpty() ? value : defaultValue;
+        }
+    }
+
+    // 排班页面一个月
+    @Benchmark
+    public int plansOfMonth(Database database) throws SQLException {
+        return database.query(PLANS_SQL, 31);
+    }
+
+    // 一个人一个月
+    @Benchmark
+    public int userPlansOfMonth(Database database) throws SQLException {
+        return database.query(USER_PLANS_SQL, 31);
+    }
+
+    // 增量修复时恢复一个oncall周期内的24小时班
+    @Benchmark
+    public int duty24hOfCycle(Database database) throws SQLException {
+        return database.query(DUTY_24H_SQL, 9);
+    }
+}
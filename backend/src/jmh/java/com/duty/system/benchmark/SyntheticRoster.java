@@ -0,0 +1,80 @@
+package com.duty.system.benchmark;
+
+import com.duty.system.entity.TimeSlot;
+import com.duty.system.entity.User;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的合成名单：oncall-A/B各35%，goc 20%，pm 10%，每个大组一名大组长
+ */
+final class SyntheticRoster {
+
+    private SyntheticRoster() {
+    }
+
+    /**
+     * @param userCount 用户数量
+     * @param startDate 排班开始日期
+     * @param days 排班天数
+     * @param leaveDensity 在排班范围内有一段请假的用户比例（0-1）
+     * @param seed 随机种子，保证同一参数生成相同名单
+     */
+    static List<User> users(int userCount, LocalDate startDate, int days, double leaveDensity, long seed) {
+        Random random = new Random(seed);
+        ZoneId zone = ZoneId.systemDefault();
+        List<User> users = new ArrayList<>(userCount);
+        int[] groupSizes = {
+                (int) (userCount * 0.35),
+                (int) (userCount * 0.35),
+                (int) (userCount * 0.2),
+                0
+        };
+        groupSizes[3] = userCount - groupSizes[0] - groupSizes[1] - groupSizes[2];
+
+        long id = 1;
+        for (int g = 0; g < groupSizes.length; g++) {
+            for (int i = 0; i < groupSizes[g]; i++) {
+                User user = new User();
+                user.setId(id);
+                user.setName("user-" + id);
+                user.setGroupId(g + 1);
+                user.setSubGroupId(g < 2 ? i % 3 + 1 : i % 4 + 1);
+                user.setIsGroupLeader(i == 0);
+                if (random.nextDouble() < leaveDensity) {
+                    LocalDate leaveStart = startDate.plusDays(random.nextInt(Math.max(days, 1)));
+                    LocalDate leaveEnd = leaveStart.plusDays(random.nextInt(14));
+                    user.setStatus(0);
+                    user.setLeaveStartDate(Date.from(leaveStart.atStartOfDay(zone).toInstant()));
+                    user.setLeaveEndDate(Date.from(leaveEnd.atStartOfDay(zone).toInstant()));
+                }
+                users.add(user);
+                id++;
+            }
+        }
+        return users;
+    }
+
+    static List<TimeSlot> timeSlots() {
+        List<TimeSlot> timeSlots = new ArrayList<>();
+        timeSlots.add(timeSlot(1L, "白班", "08:00", "18:00", 1));
+        timeSlots.add(timeSlot(2L, "24小时班", "08:00", "08:00", 3));
+        return timeSlots;
+    }
+
+    private static TimeSlot timeSlot(Long id, String name, String startTime, String endTime, int type) {
+        TimeSlot timeSlot = new TimeSlot();
+        timeSlot.setId(id);
+        timeSlot.setName(name);
+        timeSlot.setStartTime(startTime);
+        timeSlot.setEndTime(endTime);
+        timeSlot.setType(type);
+        timeSlot.setStatus(1);
+        return timeSlot;
+    }
+}
@@ -0,0 +1,35 @@
+package com.duty.system.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户、时间段、配置表的本地缓存
+ * 缓存加在对应Repository的查询方法上，通过Repository写入或删除时整表失效，
+ * 另外设置条数上限和写入后过期时间，兜底绕过Repository直接改库的情况
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String USERS = "users";
+    public static final String TIME_SLOTS = "timeSlots";
+    public static final String CONFIGS = "configs";
+
+    @Bean
+    public CacheManager cacheManager(DutyProperties dutyProperties) {
+        DutyProperties.Cache cacheProperties = dutyProperties.getCache();
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(USERS, TIME_SLOTS, CONFIGS);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfterWrite(cacheProperties.getExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .recordStats());
+        return cacheManager;
+    }
+}
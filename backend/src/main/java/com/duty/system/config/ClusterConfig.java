@@ -0,0 +1,36 @@
+package com.duty.system.config;
+
+import com.duty.system.repository.ChangeLogRepository;
+import com.duty.system.service.ChangeBus;
+import com.duty.system.service.impl.DatabaseChangeBus;
+import com.duty.system.service.impl.InMemoryChangeBus;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+/**
+ * 多节点部署：按duty.cluster.bus选择资源变更通道
+ * 本地缓存和资源版本号都由变更通道驱动，节点本身不保存需要在节点之间同步的状态；
+ * 异步生成任务、决策记录和任务范围重叠的检查只在提交任务的节点内存中，不在节点之间共享：
+ * 负载均衡需要把/generate/jobs和/generate/traces按会话路由到同一节点，节点重启后其上的任务和记录丢失；
+ * 不同节点上范围重叠的任务不会被拒绝，它们的写库阶段由PlanRangeLock的数据库命名锁依次执行
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    public ChangeBus changeBus(DutyProperties dutyProperties, ChangeLogRepository changeLogRepository) {
+        DutyProperties.Cluster cluster = dutyProperties.getCluster();
+        String nodeId = cluster.getNodeId();
+        if (nodeId == null || nodeId.isEmpty()) {
+            // pid@hostname，同一主机上的容器可能pid相同，加上随机后缀
+            nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        if ("memory".equalsIgnoreCase(cluster.getBus())) {
+            return new InMemoryChangeBus(nodeId);
+        }
+        return new DatabaseChangeBus(changeLogRepository, cluster, nodeId);
+    }
+}
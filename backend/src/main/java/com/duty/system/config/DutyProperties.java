@@ -0,0 +1,185 @@
+package com.duty.system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 排班系统自定义配置（前缀 duty）
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "duty")
+public class DutyProperties {
+
+    private Plan plan = new Plan();
+
+    private Trace trace = new Trace();
+
+    private Job job = new Job();
+
+    private Generate generate = new Generate();
+
+    private Cache cache = new Cache();
+
+    private Export export = new Export();
+
+    private Persistence persistence = new Persistence();
+
+    private Import userImport = new Import();
+
+    private Lock lock = new Lock();
+
+    private Cluster cluster = new Cluster();
+
+    public Import getImport() {
+        return userImport;
+    }
+
+    public void setImport(Import userImport) {
+        this.userImport = userImport;
+    }
+
+    @Data
+    public static class Plan {
+        // 生成排班后是否使用JDBC批量插入，false时回退为JPA逐条saveAll
+        private boolean bulkInsert = true;
+
+        // 批量插入时每批的行数
+        private int insertBatchSize = 500;
+
+        // 按日期范围删除时每条DELETE覆盖的天数，避免超大范围删除长时间持有行锁
+        private int deleteChunkDays = 31;
+
+        // 增量修复时每次读取已保存排班的天数，修复通常在变化范围后一两个9天周期内停止
+        private int repairReadChunkDays = 18;
+
+        // 流式读取排班时的JDBC fetchSize，MySQL需要Integer.MIN_VALUE才逐行读取
+        private int streamFetchSize = Integer.MIN_VALUE;
+
+        // 分页查询排班时每页最多返回的行数
+        private int maxPageSize = 5000;
+    }
+
+    @Data
+    public static class Trace {
+        // 保留最近多少次生成的决策记录
+        private int maxRuns = 20;
+
+        // 单次生成最多记录的事件数
+        private int maxEvents = 200000;
+    }
+
+    @Data
+    public static class Job {
+        // 同时执行的异步生成任务数
+        private int concurrency = 2;
+
+        // 排队等待的任务数上限，超过后拒绝提交
+        private int queueCapacity = 10;
+
+        // 保留的已结束任务数（只保留状态和日期范围，结果从duty_plan读取），超过后淘汰最早的
+        private int maxRetained = 20;
+
+        // 进度推送的最小间隔（毫秒），进度百分比变化时才推送
+        private long progressIntervalMillis = 200;
+    }
+
+    @Data
+    public static class Generate {
+        // 是否按9天oncall周期切分后并行生成，开启决策记录时始终顺序生成
+        private boolean parallel = true;
+
+        // 排班天数不少于该值时才并行生成，较短的范围顺序生成更快
+        // 串行的分段起点计算只占生成耗时的0.2%~3.5%，90天按默认每段36天至少3段，最长的一段不超过总天数的40%；
+        // 更短的范围只有1~2段，节省的时间抵不过分段调度和合并的开销（约0.1~0.2ms）
+        private int parallelMinDays = 90;
+
+        // 每个并行分段包含的9天周期数
+        private int parallelSegmentCycles = 4;
+
+        // 并行生成的线程数，0表示使用CPU核数，只有1个线程时始终顺序生成
+        private int parallelism = 0;
+    }
+
+    @Data
+    public static class Cache {
+        // 用户、时间段、配置缓存各自的最大条目数
+        private long maximumSize = 1000;
+
+        // 缓存写入后的过期时间（秒）
+        private long expireAfterWriteSeconds = 600;
+    }
+
+    @Data
+    public static class Import {
+        // 批量导入用户时JDBC每批的行数
+        private int batchSize = 200;
+
+        // 单次导入的最大行数
+        private int maxRows = 5000;
+    }
+
+    @Data
+    public static class Export {
+        // 导出xlsx时内存中保留的行数，超出的行写入临时文件
+        private int rowAccessWindow = 100;
+
+        // 导出csv时每写多少行刷新一次输出流
+        private int flushRows = 500;
+    }
+
+    @Data
+    public static class Persistence {
+        // 是否按生产环境调优JDBC驱动和Hibernate批处理，并在启动时严格校验（prod profile中开启）
+        private boolean tuned = false;
+
+        // Hibernate批处理大小，用于JPA批量更新和删除
+        private int jdbcBatchSize = 500;
+
+        // MySQL驱动每个连接缓存的预编译语句条数
+        private int prepStmtCacheSize = 250;
+
+        // MySQL驱动缓存的预编译语句最大长度
+        private int prepStmtCacheSqlLimit = 2048;
+
+        // 连接池最少需要比异步生成任务并发数多出的连接数，留给普通请求和流式导出
+        private int minSpareConnections = 2;
+    }
+
+    @Data
+    public static class Lock {
+        // 进程内排班日期范围锁的条带数
+        private int stripes = 64;
+
+        // 每个条带覆盖的连续天数，范围锁按这个粒度映射到条带
+        private int bucketDays = 7;
+
+        // 等待范围锁的最长时间（秒），超时后本次生成或删除失败
+        private int timeoutSeconds = 60;
+
+        // 连接MySQL时是否同时获取数据库命名锁（GET_LOCK），多节点部署时不同节点之间也按范围互斥
+        private boolean distributed = true;
+    }
+
+    @Data
+    public static class Cluster {
+        // 变更通道：database通过duty_change_log表在节点之间传播，memory只在本进程内传播（单节点或测试）
+        private String bus = "database";
+
+        // 本节点ID，为空时使用进程名加随机后缀
+        private String nodeId = "";
+
+        // 轮询变更记录的间隔（毫秒），也是其他节点的写入在本节点可见的最大延迟
+        private long pollIntervalMillis = 1000;
+
+        // 变更序号出现空洞时最多等待的时间（毫秒），超过后视为事务回滚并跳过
+        private long gapTimeoutMillis = 10000;
+
+        // 跳过的序号继续重新读取的时间（毫秒），应长于最长的写库事务，期间提交的变更仍会投递
+        private long gapRecheckMillis = 600000;
+
+        // 变更记录保留的小时数，各资源最近的一次变更始终保留；0表示不清理
+        private int retentionHours = 24;
+    }
+}
@@ -0,0 +1,97 @@
+package com.duty.system.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 数据库访问调优，duty.persistence.tuned=true时生效（见application-prod.properties）
+ * 1. 给MySQL连接加上批量改写、预编译语句缓存等驱动参数，配置文件或URL中已显式设置的参数不覆盖
+ * 2. 开启Hibernate的JDBC批处理和插入/更新排序
+ * 启动时的校验见PersistenceTuningValidator
+ */
+@Configuration
+public class PersistenceTuningConfig {
+
+    /**
+     * 生产环境使用的MySQL Connector/J参数
+     * rewriteBatchedStatements把批量INSERT改写成多值INSERT，批量插入排班时从每行一次往返变为每批一次
+     */
+    public static Map<String, String> mysqlDriverProperties(DutyProperties.Persistence persistence) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("rewriteBatchedStatements", "true");
+        properties.put("cachePrepStmts", "true");
+        properties.put("prepStmtCacheSize", String.valueOf(persistence.getPrepStmtCacheSize()));
+        properties.put("prepStmtCacheSqlLimit", String.valueOf(persistence.getPrepStmtCacheSqlLimit()));
+        properties.put("useServerPrepStmts", "true");
+        properties.put("useLocalSessionState", "true");
+        properties.put("cacheResultSetMetadata", "true");
+        properties.put("cacheServerConfiguration", "true");
+        properties.put("elideSetAutoCommits", "true");
+        properties.put("maintainTimeStats", "false");
+        return properties;
+    }
+
+    /**
+     * 把驱动参数加到连接池配置上，已在dataSourceProperties或jdbcUrl中设置的参数保留原值
+     */
+    public static void applyMysqlDriverProperties(HikariConfig config, DutyProperties.Persistence persistence) {
+        String url = config.getJdbcUrl();
+        for (Map.Entry<String, String> entry : mysqlDriverProperties(persistence).entrySet()) {
+            if (!config.getDataSourceProperties().containsKey(entry.getKey()) && !url.contains(entry.getKey() + "=")) {
+                config.addDataSourceProperty(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    static boolean isMysql(String jdbcUrl) {
+        return jdbcUrl != null && (jdbcUrl.startsWith("jdbc:mysql:") || jdbcUrl.startsWith("jdbc:mariadb:"));
+    }
+
+    // 连接池在第一次获取连接时才启动，这里在属性绑定完成之后、启动之前补充驱动参数
+    @Bean
+    public static BeanPostProcessor mysqlDriverTuning(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    HikariDataSource dataSource = (HikariDataSource) bean;
+                    DutyProperties.Persistence persistence = Binder.get(environment)
+                            .bind("duty.persistence", DutyProperties.Persistence.class)
+                            .orElseGet(DutyProperties.Persistence::new);
+                    if (persistence.isTuned() && isMysql(dataSource.getJdbcUrl())) {
+                        applyMysqlDriverProperties(dataSource, persistence);
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    // 排班ID使用IDENTITY自增，Hibernate不会批量INSERT，排班插入走JDBC批量（DutyPlanRepositoryImpl），
+    // 这里的批处理作用于修复排班时的批量UPDATE和DELETE
+    @Bean
+    public HibernatePropertiesCustomizer batchingHibernateProperties(DutyProperties dutyProperties) {
+        return properties -> {
+            DutyProperties.Persistence persistence = dutyProperties.getPersistence();
+            if (!persistence.isTuned()) {
+                return;
+            }
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(persistence.getJdbcBatchSize()));
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, "true");
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, "true");
+            properties.putIfAbsent(AvailableSettings.BATCH_VERSIONED_DATA, "true");
+            // IN列表参数个数补齐到2的幂，减少按ID批量删除时生成的不同SQL
+            properties.putIfAbsent(AvailableSettings.IN_CLAUSE_PARAMETER_PADDING, "true");
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.duty.system.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时校验连接池、驱动参数和Hibernate批处理配置
+ * duty.persistence.tuned=true时任一项不满足即启动失败，否则只打印警告
+ * 在所有单例创建完成后、Web服务启动前执行
+ */
+@Component
+public class PersistenceTuningValidator implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceTuningValidator.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DutyProperties dutyProperties;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        DutyProperties.Persistence persistence = dutyProperties.getPersistence();
+        Map<String, Object> hibernateProperties = entityManagerFactory.getProperties();
+        List<String> problems = new ArrayList<>();
+
+        if (dataSource instanceof HikariDataSource) {
+            HikariDataSource hikari = (HikariDataSource) dataSource;
+            // 每个异步生成任务保存排班时占用一个连接，使用数据库命名锁时还要再占用一个持有锁的连接，连接池还要留出普通请求的连接
+            int connectionsPerJob = dutyProperties.getLock().isDistributed()
+                    && PersistenceTuningConfig.isMysql(hikari.getJdbcUrl()) ? 2 : 1;
+            int required = dutyProperties.getJob().getConcurrency() * connectionsPerJob + persistence.getMinSpareConnections();
+            if (hikari.getMaximumPoolSize() < required) {
+                problems.add("连接池最大连接数" + hikari.getMaximumPoolSize() + "小于异步生成并发数加预留连接数" + required);
+            }
+            if (PersistenceTuningConfig.isMysql(hikari.getJdbcUrl())) {
+                // MySQL驱动默认把整个结果集读入内存，只有fetchSize为Integer.MIN_VALUE或开启useCursorFetch时才流式读取
+                if (dutyProperties.getPlan().getStreamFetchSize() != Integer.MIN_VALUE
+                        && !"true".equals(driverProperty(hikari, "useCursorFetch"))) {
+                    problems.add("duty.plan.stream-fetch-size不是Integer.MIN_VALUE且未开启useCursorFetch，流式读取会把结果集全部读入内存");
+                }
+                if (persistence.isTuned() && !"true".equals(driverProperty(hikari, "rewriteBatchedStatements"))) {
+                    problems.add("MySQL驱动未开启rewriteBatchedStatements，批量插入会逐行发送");
+                }
+                if (persistence.isTuned() && !"true".equals(driverProperty(hikari, "cachePrepStmts"))) {
+                    problems.add("MySQL驱动未开启cachePrepStmts");
+                }
+            }
+        }
+
+        if (persistence.isTuned()) {
+            if (intSetting(hibernateProperties, AvailableSettings.STATEMENT_BATCH_SIZE) <= 0) {
+                problems.add(AvailableSettings.STATEMENT_BATCH_SIZE + "未设置，JPA批量更新会逐条执行");
+            }
+            if ("true".equals(String.valueOf(hibernateProperties.get(AvailableSettings.SHOW_SQL)))) {
+                problems.add("生产环境开启了spring.jpa.show-sql，每条SQL都会打印到标准输出");
+            }
+        }
+        if (dutyProperties.getPlan().getInsertBatchSize() <= 0) {
+            problems.add("duty.plan.insert-batch-size必须大于0");
+        }
+
+        if (problems.isEmpty()) {
+            log.info("数据库访问配置校验通过: tuned={}, hibernate batch_size={}", persistence.isTuned(),
+                    hibernateProperties.get(AvailableSettings.STATEMENT_BATCH_SIZE));
+            return;
+        }
+        if (persistence.isTuned()) {
+            throw new IllegalStateException("数据库访问配置校验失败: " + String.join("; ", problems));
+        }
+        for (String problem : problems) {
+            log.warn("数据库访问配置: {}", problem);
+        }
+    }
+
+    // 驱动参数可以写在dataSourceProperties里，也可以写在jdbcUrl上
+    private static String driverProperty(HikariDataSource hikari, String name) {
+        Object value = hikari.getDataSourceProperties().get(name);
+        if (value != null) {
+            return String.valueOf(value);
+        }
+        String url = hikari.getJdbcUrl();
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String pair : url.substring(query + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+
+    private static int intSetting(Map<String, Object> properties, String name) {
+        Object value = properties.get(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -1,17 +1,47 @@
 package com.duty.system.controller;
 
+import com.duty.system.dto.CacheStats;
+import com.duty.system.dto.DutyPlanView;
+import com.duty.system.dto.GenerationJob;
+import com.duty.system.dto.GenerationTrace;
+import com.duty.system.dto.PlanDiff;
+import com.duty.system.dto.PlanDiffSummary;
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.dto.UserImportReport;
+import com.duty.system.dto.UserWorkload;
 import com.duty.system.entity.Config;
 import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.Leave;
 import com.duty.system.entity.TimeSlot;
 import com.duty.system.entity.User;
 import com.duty.system.service.DutyService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.YearMonth;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/duty")
@@ -20,19 +50,144 @@ public class DutyController {
     @Autowired
     private DutyService dutyService;
     
-    // 生成排班计划
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // 生成排班计划，trace=true时记录决策过程，通过响应头X-Generation-Trace-Id返回记录ID；等待重叠范围的写入超时返回409
     @PostMapping("/generate")
     public ResponseEntity<List<DutyPlan>> generateDutyPlan(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(value = "trace", defaultValue = "false") boolean trace) {
+        try {
+            if (!trace) {
+                return ResponseEntity.ok(dutyService.generateDutyPlan(startDate, endDate));
+            }
+            GenerationTrace generationTrace = dutyService.createGenerationTrace();
+            List<DutyPlan> plans = dutyService.generateDutyPlan(startDate, endDate, generationTrace);
+            return ResponseEntity.ok()
+                    .header("X-Generation-Trace-Id", generationTrace.getId())
+                    .body(plans);
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    // 预览重新生成会带来的变化，不写入数据库
+    @GetMapping("/generate/preview")
+    public ResponseEntity<PlanDiffSummary> previewDutyPlan(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        return ResponseEntity.ok(dutyService.previewDutyPlan(startDate, endDate));
+    }
+    
+    // 获取生成的决策记录
+    @GetMapping("/generate/traces/{traceId}")
+    public ResponseEntity<GenerationTrace> getGenerationTrace(@PathVariable("traceId") String traceId) {
+        GenerationTrace trace = dutyService.getGenerationTrace(traceId);
+        if (trace == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(trace);
+    }
+    
+    // 提交异步生成任务，立即返回任务ID；日期范围与进行中的任务重叠时返回409，cancelOverlapping=true时取消重叠的任务
+    @PostMapping("/generate/jobs")
+    public ResponseEntity<GenerationJob> submitGenerationJob(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(value = "cancelOverlapping", defaultValue = "false") boolean cancelOverlapping) {
+        try {
+            GenerationJob job = dutyService.submitGenerationJob(startDate, endDate, cancelOverlapping);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+    
+    // 查询异步生成任务进度
+    @GetMapping("/generate/jobs/{jobId}")
+    public ResponseEntity<GenerationJob> getGenerationJob(@PathVariable("jobId") String jobId) {
+        GenerationJob job = dutyService.getGenerationJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+    
+    // 取消异步生成任务
+    @DeleteMapping("/generate/jobs/{jobId}")
+    public ResponseEntity<GenerationJob> cancelGenerationJob(@PathVariable("jobId") String jobId) {
+        GenerationJob job = dutyService.cancelGenerationJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+    
+    // 请假变化后增量修复排班，多个人员的变化可以合并为一次：重新计算[startDate, endDate]及受其影响的后续几天，只写入有变化的记录；等待范围锁超时返回409
+    @PostMapping("/plans/repair")
+    public ResponseEntity<PlanDiff> repairDutyPlans(
             @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
             @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
-        List<DutyPlan> plans = dutyService.generateDutyPlan(startDate, endDate);
+        try {
+            return ResponseEntity.ok(dutyService.repairDutyPlans(startDate, endDate));
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    // 分页获取已完成任务的生成结果
+    @GetMapping("/generate/jobs/{jobId}/plans")
+    public ResponseEntity<Page<DutyPlan>> getGenerationJobPlans(
+            @PathVariable("jobId") String jobId,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "500") int size) {
+        if (dutyService.getGenerationJob(jobId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Page<DutyPlan> plans = dutyService.getGenerationJobPlans(jobId, page, size);
+        if (plans == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         return ResponseEntity.ok(plans);
     }
     
+    // 通过SSE订阅异步生成任务进度，任务结束后关闭连接
+    @GetMapping(value = "/generate/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeGenerationJob(@PathVariable("jobId") String jobId) {
+        GenerationJob job = dutyService.getGenerationJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(0L);
+        Consumer<GenerationJob> listener = new Consumer<GenerationJob>() {
+            @Override
+            public void accept(GenerationJob current) {
+                try {
+                    emitter.send(SseEmitter.event().name("progress").data(current));
+                    if (!current.isActive()) {
+                        emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    current.removeListener(this);
+                }
+            }
+        };
+        job.addListener(listener);
+        emitter.onCompletion(() -> job.removeListener(listener));
+        emitter.onTimeout(() -> job.removeListener(listener));
+        // 先推送一次当前进度
+        listener.accept(job);
+        return ResponseEntity.ok(emitter);
+    }
+    
     // 获取时间段配置
     @GetMapping("/time-slots")
-    public ResponseEntity<List<TimeSlot>> getTimeSlots() {
-        return ResponseEntity.ok(dutyService.getTimeSlots());
+    public ResponseEntity<List<TimeSlot>> getTimeSlots(WebRequest webRequest) {
+        return conditional(webRequest, () -> dutyService.getTimeSlots(), ResourceVersion.Resource.TIME_SLOTS);
     }
     
     // 保存时间段配置
@@ -43,8 +198,8 @@ public class DutyController {
     
     // 获取用户列表
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getUsers() {
-        return ResponseEntity.ok(dutyService.getUsers());
+    public ResponseEntity<List<User>> getUsers(WebRequest webRequest) {
+        return conditional(webRequest, () -> dutyService.getUsers(), ResourceVersion.Resource.USERS);
     }
     
     // 保存用户
@@ -53,6 +208,34 @@ public class DutyController {
         return ResponseEntity.ok(dutyService.saveUser(user));
     }
     
+    // 批量新增或更新用户，任意一行校验失败时整批不写入并返回400和逐行结果
+    @PostMapping(value = "/users/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UserImportReport> importUsers(
+            @RequestBody List<User> users,
+            @RequestParam(value = "matchByName", defaultValue = "false") boolean matchByName) {
+        try {
+            return importResponse(dutyService.importUsers(users, matchByName));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    // 从CSV批量导入用户，第一行为表头，列名与用户JSON字段一致
+    @PostMapping(value = "/users/batch", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<UserImportReport> importUsersCsv(
+            Reader csv,
+            @RequestParam(value = "matchByName", defaultValue = "false") boolean matchByName) throws IOException {
+        try {
+            return importResponse(dutyService.importUsersCsv(csv, matchByName));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    private static ResponseEntity<UserImportReport> importResponse(UserImportReport report) {
+        return report.getFailed() > 0 ? ResponseEntity.badRequest().body(report) : ResponseEntity.ok(report);
+    }
+    
     // 删除用户
     @DeleteMapping("/users/{userId}")
     public ResponseEntity<Void> deleteUser(@PathVariable("userId") Long userId) {
@@ -60,18 +243,152 @@ public class DutyController {
         return ResponseEntity.ok().build();
     }
     
+    // 获取请假记录：只传userId时返回该用户的全部请假，传startDate和endDate时返回与范围有交集的请假
+    @GetMapping("/leaves")
+    public ResponseEntity<List<Leave>> getLeaves(
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            WebRequest webRequest) {
+        if (userId == null && (startDate == null || endDate == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return conditional(webRequest, () -> dutyService.getLeaves(userId, startDate, endDate),
+                ResourceVersion.Resource.LEAVES);
+    }
+    
+    // 新增或修改一段请假，保存后需要调用/plans/repair修复已生成的排班；修改后与该用户另一段请假起止日期相同时返回409
+    @PostMapping("/leaves")
+    public ResponseEntity<Leave> saveLeave(@RequestBody Leave leave) {
+        try {
+            return ResponseEntity.ok(dutyService.saveLeave(leave));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    // 删除一段请假
+    @DeleteMapping("/leaves/{leaveId}")
+    public ResponseEntity<Void> deleteLeave(@PathVariable("leaveId") Long leaveId) {
+        dutyService.deleteLeave(leaveId);
+        return ResponseEntity.ok().build();
+    }
+    
     // 获取排班计划
     @GetMapping("/plans")
     public ResponseEntity<List<DutyPlan>> getDutyPlans(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            WebRequest webRequest) {
+        return conditional(webRequest, () -> dutyService.getDutyPlans(startDate, endDate), ResourceVersion.Resource.PLANS);
+    }
+    
+    // 获取带人员姓名、大组、小组、角色和时间段名称的排班计划，供排班页面直接展示
+    @GetMapping("/plans/view")
+    public ResponseEntity<List<DutyPlanView>> getDutyPlanViews(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            WebRequest webRequest) {
+        // 视图中带有人员、请假和时间段信息，任一变化都要重新返回
+        return conditional(webRequest, () -> dutyService.getDutyPlanViews(startDate, endDate),
+                ResourceVersion.Resource.PLANS, ResourceVersion.Resource.USERS, ResourceVersion.Resource.LEAVES,
+                ResourceVersion.Resource.TIME_SLOTS);
+    }
+    
+    // 分页获取排班计划，按日期和id排序
+    @GetMapping("/plans/page")
+    public ResponseEntity<Page<DutyPlan>> getDutyPlansPage(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "500") int size,
+            WebRequest webRequest) {
+        return conditional(webRequest, () -> dutyService.getDutyPlans(startDate, endDate, page, size),
+                ResourceVersion.Resource.PLANS);
+    }
+    
+    // 游标分页获取排班计划，下一页以本页最后一条的日期和id作为afterDate/afterId
+    @GetMapping("/plans/keyset")
+    public ResponseEntity<List<DutyPlan>> getDutyPlansAfter(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(value = "afterDate", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date afterDate,
+            @RequestParam(value = "afterId", required = false) Long afterId,
+            @RequestParam(value = "size", defaultValue = "500") int size) {
+        return ResponseEntity.ok(dutyService.getDutyPlansAfter(startDate, endDate, afterDate, afterId, size));
+    }
+    
+    // 以NDJSON（每行一条JSON）流式返回排班计划，边读边写，服务端内存不随日期范围增长
+    @GetMapping(value = "/plans/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDutyPlans(
             @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
             @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
-        return ResponseEntity.ok(dutyService.getDutyPlans(startDate, endDate));
+        StreamingResponseBody body = out -> {
+            // 每条记录之间只用换行分隔，不使用默认的空格分隔符；客户端断开或查询出错时同样关闭generator
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out).setRootValueSeparator(null)) {
+                dutyService.streamDutyPlans(startDate, endDate, plan -> {
+                    try {
+                        generator.writeObject(plan);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
+    // 以csv或xlsx格式流式导出排班计划，边读边写，服务端内存不随日期范围增长
+    @GetMapping("/plans/export")
+    public ResponseEntity<StreamingResponseBody> exportDutyPlans(
+            @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(value = "format", defaultValue = "xlsx") String format) {
+        MediaType contentType;
+        if ("csv".equals(format)) {
+            contentType = new MediaType("text", "csv", StandardCharsets.UTF_8);
+        } else if ("xlsx".equals(format)) {
+            contentType = MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        String filename = "排班计划_" + dateFormat.format(startDate) + "_" + dateFormat.format(endDate) + "." + format;
+        StreamingResponseBody body = out -> dutyService.exportDutyPlans(startDate, endDate, format, out);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString())
+                .body(body);
+    }
+    
+    // 按用户统计[startMonth, endMonth]内各类班次的次数，用于查看排班是否公平
+    @GetMapping("/workload")
+    public ResponseEntity<List<UserWorkload>> getUserWorkloads(
+            @RequestParam("startMonth") @DateTimeFormat(pattern = "yyyy-MM") YearMonth startMonth,
+            @RequestParam("endMonth") @DateTimeFormat(pattern = "yyyy-MM") YearMonth endMonth,
+            @RequestParam(value = "groupId", required = false) Integer groupId,
+            WebRequest webRequest) {
+        return conditional(webRequest, () -> dutyService.getUserWorkloads(startMonth, endMonth, groupId),
+                ResourceVersion.Resource.PLANS, ResourceVersion.Resource.USERS, ResourceVersion.Resource.WORKLOAD);
+    }
+    
+    // 根据全部已有排班重建工作量汇总
+    @PostMapping("/workload/rebuild")
+    public ResponseEntity<Void> rebuildWorkload() {
+        dutyService.rebuildWorkload();
+        return ResponseEntity.ok().build();
     }
     
     // 获取所有配置
     @GetMapping("/configs")
-    public ResponseEntity<List<Config>> getConfigs() {
-        return ResponseEntity.ok(dutyService.getConfigs());
+    public ResponseEntity<List<Config>> getConfigs(WebRequest webRequest) {
+        return conditional(webRequest, () -> dutyService.getConfigs(), ResourceVersion.Resource.CONFIGS);
     }
     
     // 保存配置
@@ -82,9 +399,8 @@ public class DutyController {
     
     // 根据key获取配置
     @GetMapping("/configs/{key}")
-    public ResponseEntity<String> getConfigByKey(@PathVariable("key") String key) {
-        String value = dutyService.getConfigValueByKey(key);
-        return ResponseEntity.ok(value);
+    public ResponseEntity<String> getConfigByKey(@PathVariable("key") String key, WebRequest webRequest) {
+        return conditional(webRequest, () -> dutyService.getConfigValueByKey(key), ResourceVersion.Resource.CONFIGS);
     }
     
     // 批量删除排班计划
@@ -94,12 +410,34 @@ public class DutyController {
         return ResponseEntity.ok().build();
     }
     
-    // 根据日期范围删除排班计划
+    // 根据日期范围删除排班计划，等待范围锁超时返回409
     @DeleteMapping("/plans/range")
     public ResponseEntity<Void> deleteDutyPlansByRange(
             @RequestParam("startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
             @RequestParam("endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
-        dutyService.deleteDutyPlans(startDate, endDate);
-        return ResponseEntity.ok().build();
+        try {
+            dutyService.deleteDutyPlans(startDate, endDate);
+            return ResponseEntity.ok().build();
+        } catch (CannotAcquireLockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    // 获取用户、时间段、配置缓存的命中统计
+    @GetMapping("/cache/stats")
+    public ResponseEntity<List<CacheStats>> getCacheStats() {
+        return ResponseEntity.ok(dutyService.getCacheStats());
+    }
+    
+    /**
+     * 条件GET：请求带的If-None-Match/If-Modified-Since与资源当前版本一致时直接返回304，不查询数据库也不做序列化
+     * 否则查询并返回数据，响应头中带上ETag和Last-Modified（由checkNotModified写入）
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest webRequest, Supplier<T> body, ResourceVersion.Resource... resources) {
+        ResourceVersion version = dutyService.getResourceVersion(resources);
+        if (webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok(body.get());
     }
-}
\ No newline at end of file
+}
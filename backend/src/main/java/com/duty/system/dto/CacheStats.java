@@ -0,0 +1,36 @@
+package com.duty.system.dto;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.Data;
+
+/**
+ * 单个缓存的命中统计
+ */
+@Data
+public class CacheStats {
+    private String name;
+
+    // 当前条目数（估算值）
+    private long size;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private double hitRate;
+
+    // 因条数上限或过期被淘汰的条目数
+    private long evictionCount;
+
+    public static CacheStats of(String name, Cache<Object, Object> cache) {
+        com.github.benmanes.caffeine.cache.stats.CacheStats nativeStats = cache.stats();
+        CacheStats stats = new CacheStats();
+        stats.setName(name);
+        stats.setSize(cache.estimatedSize());
+        stats.setHitCount(nativeStats.hitCount());
+        stats.setMissCount(nativeStats.missCount());
+        stats.setHitRate(nativeStats.hitRate());
+        stats.setEvictionCount(nativeStats.evictionCount());
+        return stats;
+    }
+}
@@ -0,0 +1,81 @@
+package com.duty.system.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 排班计划展示视图，排班字段之外附带人员和时间段信息，由一条关联查询直接构造，前端无需再按userId查找用户
+ */
+@Data
+@NoArgsConstructor
+public class DutyPlanView {
+    private Long id;
+
+    private Long userId;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private Date date;
+
+    private Long timeSlotId;
+
+    private String timeSlotName;
+
+    private Integer type; // 1: 白班, 2: 夜班, 3: 24小时班, 4: 辅助
+
+    private Integer assignedSubGroupId;
+
+    private Integer status;
+
+    private Integer dutyGroupId; // 兼大组ID
+
+    private Integer dutySubGroupId; // 兼小组ID
+
+    // 人员信息，用户已被删除时为null
+    private String userName;
+
+    private Integer groupId;
+
+    private Integer subGroupId;
+
+    private Boolean isManager;
+
+    private Boolean isGroupLeader;
+
+    private Boolean isSubGroupLeader;
+
+    // 该用户的请假：User上的请假时间，以及请假表中与查询范围有交集的各段，按开始日期排序
+    private List<LeavePeriod> leaves = new ArrayList<>();
+
+    /**
+     * 供DutyPlanRepository.VIEWS_BY_DATE_RANGE构造，请假表中的请假由DutyService查询后追加
+     */
+    public DutyPlanView(Long id, Long userId, Date date, Long timeSlotId, String timeSlotName, Integer type,
+                        Integer assignedSubGroupId, Integer status, Integer dutyGroupId, Integer dutySubGroupId,
+                        String userName, Integer groupId, Integer subGroupId, Boolean isManager, Boolean isGroupLeader,
+                        Boolean isSubGroupLeader, Date leaveStartDate, Date leaveEndDate) {
+        this.id = id;
+        this.userId = userId;
+        this.date = date;
+        this.timeSlotId = timeSlotId;
+        this.timeSlotName = timeSlotName;
+        this.type = type;
+        this.assignedSubGroupId = assignedSubGroupId;
+        this.status = status;
+        this.dutyGroupId = dutyGroupId;
+        this.dutySubGroupId = dutySubGroupId;
+        this.userName = userName;
+        this.groupId = groupId;
+        this.subGroupId = subGroupId;
+        this.isManager = isManager;
+        this.isGroupLeader = isGroupLeader;
+        this.isSubGroupLeader = isSubGroupLeader;
+        if (leaveStartDate != null && leaveEndDate != null) {
+            leaves.add(new LeavePeriod(leaveStartDate, leaveEndDate));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.duty.system.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 异步排班生成任务及其进度
+ */
+@Getter
+@Setter
+public class GenerationJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private final Date startDate;
+
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private final Date endDate;
+
+    private final int daysTotal;
+
+    private volatile Status status = Status.QUEUED;
+
+    // 已生成的天数，并行生成时各分段同时推进，只增不减
+    private volatile int daysDone;
+
+    // 生成的排班总行数，生成完成后才有值；结果本身不保存在任务中，完成后按日期范围从duty_plan分页读取
+    private volatile int rowsTotal;
+
+    // 已写入数据库的行数
+    private volatile int rowsWritten;
+
+    private volatile String error;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private final Date createdAt = new Date();
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private volatile Date finishedAt;
+
+    @JsonIgnore
+    private volatile Future<?> future;
+
+    @JsonIgnore
+    private volatile boolean cancelRequested;
+
+    @JsonIgnore
+    private final List<Consumer<GenerationJob>> listeners = new CopyOnWriteArrayList<>();
+
+    // 已提交但尚未执行的进度通知，用于合并连续的通知
+    @JsonIgnore
+    private final AtomicBoolean notifyPending = new AtomicBoolean();
+
+    public GenerationJob(String id, Date startDate, Date endDate, int daysTotal) {
+        this.id = id;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.daysTotal = daysTotal;
+    }
+
+    public boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+
+    /**
+     * 与[startDate, endDate]是否有重叠的日期
+     */
+    public boolean overlaps(Date otherStart, Date otherEnd) {
+        return !startDate.after(otherEnd) && !otherStart.after(endDate);
+    }
+
+    public void addListener(Consumer<GenerationJob> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<GenerationJob> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 在executor中通知监听者，已有未执行的通知时直接合并，监听者总是读到执行时的最新进度
+     */
+    public void notifyListeners(Executor executor) {
+        if (notifyPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                notifyPending.set(false);
+                notifyListeners();
+            });
+        }
+    }
+
+    public void notifyListeners() {
+        for (Consumer<GenerationJob> listener : listeners) {
+            listener.accept(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.duty.system.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次排班生成的决策记录，只有请求时显式开启才会创建
+ */
+@Data
+public class GenerationTrace {
+    private final String id;
+
+    @JsonIgnore
+    private final int maxEvents;
+
+    private final List<Event> events = new ArrayList<>();
+
+    // 事件数超过maxEvents后不再记录
+    private boolean truncated;
+
+    public void record(int epochDay, String step, Long userId, String detail) {
+        if (events.size() >= maxEvents) {
+            truncated = true;
+            return;
+        }
+        events.add(new Event(LocalDate.ofEpochDay(epochDay), step, userId, detail));
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Event {
+        private LocalDate date;
+        // 决策步骤：REST、LEADER、DUTY_24H、BACKUP_POOL、GOC、PM
+        private String step;
+        private Long userId;
+        private String detail;
+    }
+}
@@ -0,0 +1,22 @@
+package com.duty.system.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 一段请假的起止日期（开始和结束当天都算请假），排班展示和导出时User上的请假时间和请假表中的各段都用它表示
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeavePeriod {
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private Date startDate;
+
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private Date endDate;
+}
@@ -0,0 +1,119 @@
+package com.duty.system.dto;
+
+import com.duty.system.entity.DutyPlan;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 已保存排班与重新计算的排班之间的差异，按(日期, 用户)对应
+ */
+@Data
+public class PlanDiff {
+    // 需要新增的排班
+    private final List<DutyPlan> inserts = new ArrayList<>();
+
+    // 需要更新的排班（已带上原记录的id）
+    private final List<DutyPlan> updates = new ArrayList<>();
+
+    // 需要删除的排班
+    private final List<DutyPlan> deletes = new ArrayList<>();
+
+    // 被updates替换的原记录，与updates按下标一一对应
+    @JsonIgnore
+    private final List<DutyPlan> replaced = new ArrayList<>();
+
+    // 没有变化的排班数
+    private int unchanged;
+
+    /**
+     * 比较同一批日期的已保存排班和重新计算的排班，把差异追加到当前结果中
+     * 同一(日期, 用户)可能有多条排班（如大组长兼岗），先配对完全相同的，剩下的依次配对为更新
+     */
+    public void compare(List<DutyPlan> current, List<DutyPlan> target) {
+        Map<Key, List<DutyPlan>> currentByKey = new HashMap<>(current.size() * 2);
+        for (DutyPlan plan : current) {
+            currentByKey.computeIfAbsent(new Key(plan), k -> new ArrayList<>(1)).add(plan);
+        }
+        List<DutyPlan> changed = new ArrayList<>();
+        for (DutyPlan plan : target) {
+            if (removeSame(currentByKey.get(new Key(plan)), plan)) {
+                unchanged++;
+            } else {
+                changed.add(plan);
+            }
+        }
+        for (DutyPlan plan : changed) {
+            List<DutyPlan> candidates = currentByKey.get(new Key(plan));
+            if (candidates == null || candidates.isEmpty()) {
+                inserts.add(plan);
+            } else {
+                DutyPlan previous = candidates.remove(0);
+                plan.setId(previous.getId());
+                updates.add(plan);
+                replaced.add(previous);
+            }
+        }
+        for (List<DutyPlan> remaining : currentByKey.values()) {
+            deletes.addAll(remaining);
+        }
+    }
+
+    public boolean isEmpty() {
+        return inserts.isEmpty() && updates.isEmpty() && deletes.isEmpty();
+    }
+
+    private static boolean removeSame(List<DutyPlan> candidates, DutyPlan plan) {
+        if (candidates == null) {
+            return false;
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            if (sameAssignment(candidates.get(i), plan)) {
+                candidates.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // a为已保存的排班，b为重新计算的排班；预览时缺少白班或24小时班时间段不会创建默认的，b的时间段ID为null，
+    // 此时不比较时间段，只比较人员安排，否则该类型的每条排班都会因为时间段ID不同被算作更新
+    private static boolean sameAssignment(DutyPlan a, DutyPlan b) {
+        return (b.getTimeSlotId() == null || Objects.equals(a.getTimeSlotId(), b.getTimeSlotId()))
+                && Objects.equals(a.getType(), b.getType())
+                && Objects.equals(a.getAssignedSubGroupId(), b.getAssignedSubGroupId())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getDutyGroupId(), b.getDutyGroupId())
+                && Objects.equals(a.getDutySubGroupId(), b.getDutySubGroupId());
+    }
+
+    // (日期, 用户)，日期按毫秒比较，数据库读出的Timestamp和生成的Date可以直接对应
+    private static final class Key {
+        private final long date;
+        private final Long userId;
+
+        Key(DutyPlan plan) {
+            this.date = plan.getDate().getTime();
+            this.userId = plan.getUserId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return date == other.date && Objects.equals(userId, other.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(date) * 31 + Objects.hashCode(userId);
+        }
+    }
+}
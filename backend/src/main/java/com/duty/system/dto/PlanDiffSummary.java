@@ -0,0 +1,64 @@
+package com.duty.system.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 重新生成预览的差异统计，只包含计数，按人员所在大组和日期汇总
+ */
+@Data
+public class PlanDiffSummary {
+    public enum Change {
+        INSERT, UPDATE, DELETE
+    }
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private final LocalDate startDate;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private final LocalDate endDate;
+
+    private final Counts total = new Counts();
+
+    // 没有变化的排班数
+    private int unchanged;
+
+    // 按人员所在大组统计，用户已被删除时大组为0
+    private final Map<Integer, Counts> byGroup = new TreeMap<>();
+
+    // 按日期统计，只包含有变化的日期
+    private final Map<LocalDate, Counts> byDay = new TreeMap<>();
+
+    public void count(Change change, LocalDate date, Integer groupId) {
+        total.add(change);
+        byGroup.computeIfAbsent(groupId != null ? groupId : 0, g -> new Counts()).add(change);
+        byDay.computeIfAbsent(date, d -> new Counts()).add(change);
+    }
+
+    @Data
+    public static class Counts {
+        private int inserts;
+
+        private int updates;
+
+        private int deletes;
+
+        void add(Change change) {
+            switch (change) {
+                case INSERT:
+                    inserts++;
+                    break;
+                case UPDATE:
+                    updates++;
+                    break;
+                default:
+                    deletes++;
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.duty.system.dto;
+
+import lombok.Data;
+
+/**
+ * 一组资源当前的版本，用于HTTP条件请求（ETag / Last-Modified）
+ */
+@Data
+public class ResourceVersion {
+    // 可做条件请求的资源，通过DutyService写入时递增对应的版本号；WORKLOAD只在重建工作量汇总时递增，排班变化体现在PLANS上
+    public enum Resource {
+        PLANS, USERS, TIME_SLOTS, CONFIGS, WORKLOAD, LEAVES
+    }
+
+    // 带引号的强ETag
+    private final String etag;
+
+    // 这组资源中最近一次修改的时间（毫秒）
+    private final long lastModified;
+}
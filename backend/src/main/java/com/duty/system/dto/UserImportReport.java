@@ -0,0 +1,63 @@
+package com.duty.system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量导入用户的结果，任意一行校验失败时整批都不会写入
+ */
+@Data
+public class UserImportReport {
+    public enum Result {
+        INSERTED, UPDATED, FAILED
+    }
+
+    private int total;
+
+    private int inserted;
+
+    private int updated;
+
+    private int failed;
+
+    // 是否已写入数据库
+    private boolean applied;
+
+    // 每行的处理结果，行号从1开始（CSV不含表头行）
+    private final List<Row> rows = new ArrayList<>();
+
+    public void add(Row row) {
+        rows.add(row);
+        total++;
+        switch (row.getResult()) {
+            case INSERTED:
+                inserted++;
+                break;
+            case UPDATED:
+                updated++;
+                break;
+            default:
+                failed++;
+                break;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row {
+        private int row;
+
+        private Long id;
+
+        private String name;
+
+        private Result result;
+
+        private String error;
+    }
+}
@@ -0,0 +1,50 @@
+package com.duty.system.dto;
+
+import lombok.Data;
+
+/**
+ * 一个用户在统计期间内各类班次的次数，用于比较同组人员的工作量是否均衡
+ */
+@Data
+public class UserWorkload {
+    private Long userId;
+
+    // 人员信息，用户已被删除时为null
+    private String userName;
+
+    private Integer groupId;
+
+    private Integer subGroupId;
+
+    private int dayShifts; // 白班
+
+    private int nightShifts; // 夜班
+
+    private int shifts24h; // 24小时班
+
+    private int assistShifts; // 辅助
+
+    // 其中被补充到其他组（设置了兼大组）的次数
+    private int backfills;
+
+    private int total;
+
+    public void add(int type, int shifts, int backfillCount) {
+        switch (type) {
+            case 1:
+                dayShifts += shifts;
+                break;
+            case 2:
+                nightShifts += shifts;
+                break;
+            case 3:
+                shifts24h += shifts;
+                break;
+            default:
+                assistShifts += shifts;
+                break;
+        }
+        backfills += backfillCount;
+        total += shifts;
+    }
+}
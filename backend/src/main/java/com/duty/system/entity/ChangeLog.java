@@ -0,0 +1,34 @@
+package com.duty.system.entity;
+
+import com.duty.system.dto.ResourceVersion;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import javax.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 资源变更记录，多节点部署时各节点轮询这张表，得知其他节点写入了哪些资源
+ * id全局递增，同时作为该资源的版本号，所有节点据此生成一致的ETag
+ */
+@Data
+@Entity
+@Table(name = "duty_change_log", indexes = {
+        @Index(name = "idx_duty_change_log_changed_at", columnList = "changed_at")
+})
+public class ChangeLog {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "resource", nullable = false, length = 20)
+    private ResourceVersion.Resource resource;
+    
+    @Column(name = "node_id", nullable = false, length = 100)
+    private String nodeId; // 发布变更的节点
+    
+    @Column(name = "changed_at", nullable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private Date changedAt;
+}
@@ -8,7 +8,13 @@ import java.util.Date;
 
 @Data
 @Entity
-@Table(name = "duty_plan")
+// 索引在已有的库上由db/migration/V2__duty_plan_indexes.sql创建，修改时两处保持一致
+@Table(name = "duty_plan", indexes = {
+        // 按日期范围查询/删除，(date)单列查询走该索引的最左前缀
+        @Index(name = "idx_duty_plan_date_type_status", columnList = "date, type, status"),
+        // 按用户+日期范围查询
+        @Index(name = "idx_duty_plan_user_date", columnList = "user_id, date")
+})
 public class DutyPlan {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,32 @@
+package com.duty.system.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import javax.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 一次排班生成的日期范围。生成引擎按起始日计算oncall周期和小组轮换，
+ * 增量修复某几天时需要知道这几天是由哪次生成（以哪天为起始日）排出来的
+ */
+@Data
+@Entity
+@Table(name = "generation_run")
+public class GenerationRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "start_date", nullable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private Date startDate;
+    
+    @Column(name = "end_date", nullable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private Date endDate;
+    
+    @Column(name = "created_at", nullable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Shanghai")
+    private Date createdAt;
+}
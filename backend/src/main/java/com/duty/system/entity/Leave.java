@@ -0,0 +1,39 @@
+package com.duty.system.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import javax.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 用户的一段请假（开始和结束当天都算请假），同一用户可以有任意多段，生成排班时与User上的请假时间一起生效
+ * 表名不用leave，leave是MySQL的保留字
+ */
+@Data
+@Entity
+@Table(name = "user_leave", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_leave_user_start_end", columnNames = {"user_id", "start_date", "end_date"})
+}, indexes = {
+        // 按日期范围查询与生成范围有交集的请假：end_date >= 范围开始走索引，历史请假不会被扫描
+        @Index(name = "idx_user_leave_end_start", columnList = "end_date, start_date")
+})
+public class Leave {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "start_date", nullable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private Date startDate;
+    
+    @Column(name = "end_date", nullable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "Asia/Shanghai")
+    private Date endDate;
+    
+    @Column(name = "reason")
+    private String reason; // 请假原因，可为空
+}
@@ -0,0 +1,35 @@
+package com.duty.system.entity;
+
+import javax.persistence.*;
+import lombok.Data;
+
+/**
+ * 按(用户, 月份, 班次类型)汇总的排班数，随排班的生成、修复和删除增量维护，用于工作量公平性统计
+ */
+@Data
+@Entity
+@Table(name = "duty_workload", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_duty_workload_user_month_type", columnNames = {"user_id", "month", "type"})
+}, indexes = {
+        @Index(name = "idx_duty_workload_month", columnList = "month")
+})
+public class WorkloadStat {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "month", nullable = false)
+    private Integer month; // yyyyMM，如202601
+    
+    @Column(name = "type", nullable = false)
+    private Integer type; // 1: 白班, 2: 夜班, 3: 24小时班, 4: 辅助
+    
+    @Column(name = "shifts", nullable = false)
+    private Integer shifts = 0;
+    
+    @Column(name = "backfills", nullable = false)
+    private Integer backfills = 0; // 其中被补充到其他组（设置了兼大组）的次数
+}
@@ -0,0 +1,31 @@
+package com.duty.system.repository;
+
+import com.duty.system.entity.ChangeLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface ChangeLogRepository extends JpaRepository<ChangeLog, Long> {
+    // 轮询：序号大于id的变更，每次最多取500条
+    List<ChangeLog> findTop500ByIdGreaterThanOrderByIdAsc(Long id);
+
+    ChangeLog findTopByOrderByIdDesc();
+
+    // 每种资源最近的一次变更
+    @Query("select c from ChangeLog c where c.id in (select max(d.id) from ChangeLog d group by d.resource)")
+    List<ChangeLog> findLatestPerResource();
+
+    // 清理changedAt之前的变更，keepIds（各资源最近的一次变更）保留，它们是资源当前的版本号
+    @Transactional
+    @Modifying
+    @Query("delete from ChangeLog c where c.changedAt < :before and c.id not in :keepIds")
+    int deleteChangedBefore(@Param("before") Date before, @Param("keepIds") Collection<Long> keepIds);
+}
@@ -1,12 +1,34 @@
 package com.duty.system.repository;
 
+import com.duty.system.config.CacheConfig;
 import com.duty.system.entity.Config;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ConfigRepository extends JpaRepository<Config, Long> {
+    @Cacheable(CacheConfig.CONFIGS)
     Optional<Config> findByConfigKey(String configKey);
-}
\ No newline at end of file
+
+    // 全部配置走缓存，返回的列表是共享的，调用方不要修改
+    @Override
+    @Cacheable(CacheConfig.CONFIGS)
+    List<Config> findAll();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CONFIGS, allEntries = true)
+    <S extends Config> S save(S config);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CONFIGS, allEntries = true)
+    <S extends Config> List<S> saveAll(Iterable<S> configs);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CONFIGS, allEntries = true)
+    void deleteById(Long id);
+}
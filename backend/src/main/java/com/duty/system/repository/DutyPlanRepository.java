@@ -1,15 +1,76 @@
 package com.duty.system.repository;
 
+import com.duty.system.dto.DutyPlanView;
 import com.duty.system.entity.DutyPlan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
 @Repository
-public interface DutyPlanRepository extends JpaRepository<DutyPlan, Long> {
+public interface DutyPlanRepository extends JpaRepository<DutyPlan, Long>, DutyPlanRepositoryCustom {
+    // 排班展示视图查询，findViewsByDateRange和流式导出共用
+    String VIEWS_BY_DATE_RANGE = "select new com.duty.system.dto.DutyPlanView(p.id, p.userId, p.date, p.timeSlotId, "
+            + "t.name, p.type, p.assignedSubGroupId, p.status, p.dutyGroupId, p.dutySubGroupId, u.name, u.groupId, "
+            + "u.subGroupId, u.isManager, u.isGroupLeader, u.isSubGroupLeader, u.leaveStartDate, u.leaveEndDate) "
+            + "from DutyPlan p left join User u on u.id = p.userId left join TimeSlot t on t.id = p.timeSlotId "
+            + "where p.date >= :fromDate and p.date < :toDate order by p.date, p.id";
+
     List<DutyPlan> findByUserIdAndDateBetween(Long userId, Date startDate, Date endDate);
     List<DutyPlan> findByDateBetween(Date startDate, Date endDate);
     List<DutyPlan> findByDate(Date date);
-}
\ No newline at end of file
+
+    // 按日期区间[fromDate, toDate)直接执行一条DELETE，不加载实体
+    @Transactional
+    @Modifying
+    @Query("delete from DutyPlan p where p.date >= :fromDate and p.date < :toDate")
+    int deleteByDateRange(@Param("fromDate") Date fromDate, @Param("toDate") Date toDate);
+
+    // 按(用户, 类型)统计日期区间[fromDate, toDate)内的排班数和其中设置了兼大组的数量，用于维护工作量汇总
+    // 调用方按自然月拆分区间，每个月的结果直接对应duty_workload中的行；每行为(userId, type, count, backfills)
+    @Query("select p.userId, p.type, count(p), count(p.dutyGroupId) from DutyPlan p "
+            + "where p.date >= :fromDate and p.date < :toDate group by p.userId, p.type")
+    List<Object[]> countWorkloadByDateRange(@Param("fromDate") Date fromDate, @Param("toDate") Date toDate);
+
+    // 同countWorkloadByDateRange，只统计指定id的排班
+    @Query("select p.userId, p.type, count(p), count(p.dutyGroupId) from DutyPlan p "
+            + "where p.id in :ids and p.date >= :fromDate and p.date < :toDate group by p.userId, p.type")
+    List<Object[]> countWorkloadByIds(@Param("ids") Collection<Long> ids,
+                                      @Param("fromDate") Date fromDate, @Param("toDate") Date toDate);
+
+    // 最早和最晚的排班日期，没有排班时为null
+    @Query("select min(p.date), max(p.date) from DutyPlan p")
+    List<Object[]> findDateBounds();
+
+    // 指定id的排班中最早和最晚的日期，都不存在时为null
+    @Query("select min(p.date), max(p.date) from DutyPlan p where p.id in :ids")
+    List<Object[]> findDateBoundsByIds(@Param("ids") Collection<Long> ids);
+
+    // 按日期区间[fromDate, toDate)查询，按日期和id排序
+    @Query("select p from DutyPlan p where p.date >= :fromDate and p.date < :toDate order by p.date, p.id")
+    List<DutyPlan> findByDateRange(@Param("fromDate") Date fromDate, @Param("toDate") Date toDate);
+
+    // 按班次类型和日期区间[fromDate, toDate)查询
+    List<DutyPlan> findByTypeAndDateGreaterThanEqualAndDateLessThan(Integer type, Date fromDate, Date toDate);
+
+    // 按日期区间[fromDate, toDate)分页查询
+    Page<DutyPlan> findByDateGreaterThanEqualAndDateLessThan(Date fromDate, Date toDate, Pageable pageable);
+
+    // 按(date, id)游标分页：返回排在(afterDate, afterId)之后、toDate之前的记录，不需要count和offset扫描
+    @Query("select p from DutyPlan p where p.date < :toDate "
+            + "and (p.date > :afterDate or (p.date = :afterDate and p.id > :afterId)) order by p.date, p.id")
+    List<DutyPlan> findAfter(@Param("afterDate") Date afterDate, @Param("afterId") Long afterId,
+                             @Param("toDate") Date toDate, Pageable pageable);
+
+    // 按日期区间[fromDate, toDate)查询排班展示视图，一条SQL关联用户和时间段
+    @Query(VIEWS_BY_DATE_RANGE)
+    List<DutyPlanView> findViewsByDateRange(@Param("fromDate") Date fromDate, @Param("toDate") Date toDate);
+}
@@ -0,0 +1,34 @@
+package com.duty.system.repository;
+
+import com.duty.system.dto.DutyPlanView;
+import com.duty.system.entity.DutyPlan;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+public interface DutyPlanRepositoryCustom {
+    /**
+     * 按批次通过JDBC批量插入排班计划，插入后回填每条计划的id
+     * @param plans 待插入的排班计划（id应为空）
+     * @return 按输入顺序返回插入后的id
+     */
+    List<Long> batchInsert(List<DutyPlan> plans);
+    
+    /**
+     * 同batchInsert，每写完一批回调一次已写入的总行数
+     */
+    List<Long> batchInsert(List<DutyPlan> plans, IntConsumer onBatchWritten);
+    
+    /**
+     * 按(date, id)顺序逐条读取日期区间[fromDate, toDate)内的排班计划，处理完的实体立即从持久化上下文中移除
+     * 需要在事务内调用，读取过程中一直占用数据库连接
+     */
+    void streamByDateRange(Date fromDate, Date toDate, Consumer<DutyPlan> action);
+    
+    /**
+     * 同streamByDateRange，逐条读取带人员和时间段信息的排班视图，视图不是实体，不会进入持久化上下文
+     */
+    void streamViewsByDateRange(Date fromDate, Date toDate, Consumer<DutyPlanView> action);
+}
@@ -0,0 +1,127 @@
+package com.duty.system.repository;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.dto.DutyPlanView;
+import com.duty.system.entity.DutyPlan;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * DutyPlanRepository的自定义实现，DutyPlan使用IDENTITY主键，Hibernate无法批量插入，这里直接走JDBC批处理
+ */
+public class DutyPlanRepositoryImpl implements DutyPlanRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO duty_plan "
+            + "(user_id, date, time_slot_id, type, assigned_sub_group_id, status, duty_group_id, duty_sub_group_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DutyProperties dutyProperties;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> batchInsert(List<DutyPlan> plans) {
+        return batchInsert(plans, null);
+    }
+
+    @Override
+    public List<Long> batchInsert(List<DutyPlan> plans, IntConsumer onBatchWritten) {
+        List<Long> ids = new ArrayList<>(plans.size());
+        if (plans.isEmpty()) {
+            return ids;
+        }
+        int batchSize = Math.max(1, dutyProperties.getPlan().getInsertBatchSize());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (int from = 0; from < plans.size(); from += batchSize) {
+                    int to = Math.min(from + batchSize, plans.size());
+                    for (int i = from; i < to; i++) {
+                        bind(ps, plans.get(i));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    // 自增主键按插入顺序返回，依次回填到对应的计划上
+                    int index = from;
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next() && index < to) {
+                            Long id = keys.getLong(1);
+                            plans.get(index++).setId(id);
+                            ids.add(id);
+                        }
+                    }
+                    if (onBatchWritten != null) {
+                        onBatchWritten.accept(to);
+                    }
+                }
+            }
+            return null;
+        });
+        return ids;
+    }
+
+    @Override
+    public void streamByDateRange(Date fromDate, Date toDate, Consumer<DutyPlan> action) {
+        TypedQuery<DutyPlan> query = entityManager.createQuery(
+                "select p from DutyPlan p where p.date >= :fromDate and p.date < :toDate order by p.date, p.id",
+                DutyPlan.class);
+        query.setParameter("fromDate", fromDate);
+        query.setParameter("toDate", toDate);
+        // MySQL驱动只有fetchSize为Integer.MIN_VALUE时才逐行读取，否则会把整个结果集读入内存
+        query.setHint(QueryHints.HINT_FETCH_SIZE, dutyProperties.getPlan().getStreamFetchSize());
+        query.setHint(QueryHints.HINT_READONLY, true);
+        try (Stream<DutyPlan> stream = query.getResultStream()) {
+            stream.forEach(plan -> {
+                action.accept(plan);
+                entityManager.detach(plan);
+            });
+        }
+    }
+
+    @Override
+    public void streamViewsByDateRange(Date fromDate, Date toDate, Consumer<DutyPlanView> action) {
+        TypedQuery<DutyPlanView> query = entityManager.createQuery(DutyPlanRepository.VIEWS_BY_DATE_RANGE,
+                DutyPlanView.class);
+        query.setParameter("fromDate", fromDate);
+        query.setParameter("toDate", toDate);
+        query.setHint(QueryHints.HINT_FETCH_SIZE, dutyProperties.getPlan().getStreamFetchSize());
+        query.setHint(QueryHints.HINT_READONLY, true);
+        try (Stream<DutyPlanView> stream = query.getResultStream()) {
+            stream.forEach(action);
+        }
+    }
+
+    private void bind(PreparedStatement ps, DutyPlan plan) throws SQLException {
+        ps.setLong(1, plan.getUserId());
+        ps.setTimestamp(2, new Timestamp(plan.getDate().getTime()));
+        ps.setLong(3, plan.getTimeSlotId());
+        ps.setInt(4, plan.getType());
+        ps.setObject(5, plan.getAssignedSubGroupId(), Types.INTEGER);
+        ps.setInt(6, plan.getStatus());
+        ps.setObject(7, plan.getDutyGroupId(), Types.INTEGER);
+        ps.setObject(8, plan.getDutySubGroupId(), Types.INTEGER);
+    }
+}
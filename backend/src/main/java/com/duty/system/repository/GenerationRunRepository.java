@@ -0,0 +1,23 @@
+package com.duty.system.repository;
+
+import com.duty.system.entity.GenerationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface GenerationRunRepository extends JpaRepository<GenerationRun, Long> {
+    List<GenerationRun> findAllByOrderByIdAsc();
+
+    // 删除被[startDate, endDate]完全覆盖的生成记录，这些日期已经全部被新的生成替换
+    @Transactional
+    @Modifying
+    @Query("delete from GenerationRun r where r.startDate >= :startDate and r.endDate <= :endDate")
+    int deleteCoveredBy(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
+}
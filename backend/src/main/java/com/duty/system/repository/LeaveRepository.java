@@ -0,0 +1,35 @@
+package com.duty.system.repository;
+
+import com.duty.system.entity.Leave;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LeaveRepository extends JpaRepository<Leave, Long> {
+    // 一次查出与[startDate, endDate]有交集的全部请假，供排班生成使用
+    @Query("select l from Leave l where l.endDate >= :startDate and l.startDate <= :endDate order by l.userId, l.startDate")
+    List<Leave> findOverlapping(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    // 某个用户与[startDate, endDate]有交集的请假
+    @Query("select l from Leave l where l.userId = :userId and l.endDate >= :startDate and l.startDate <= :endDate "
+            + "order by l.startDate")
+    List<Leave> findOverlappingByUserId(@Param("userId") Long userId,
+                                        @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    List<Leave> findByUserIdOrderByStartDateAsc(Long userId);
+
+    Optional<Leave> findByUserIdAndStartDateAndEndDate(Long userId, Date startDate, Date endDate);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Leave l where l.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -1,6 +1,9 @@
 package com.duty.system.repository;
 
+import com.duty.system.config.CacheConfig;
 import com.duty.system.entity.TimeSlot;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,6 +11,24 @@ import java.util.List;
 
 @Repository
 public interface TimeSlotRepository extends JpaRepository<TimeSlot, Long> {
+    // 按状态查询走缓存，返回的列表是共享的，调用方不要修改
+    @Cacheable(CacheConfig.TIME_SLOTS)
     List<TimeSlot> findByStatus(Integer status);
     List<TimeSlot> findByType(Integer type);
-}
\ No newline at end of file
+
+    @Override
+    @Cacheable(CacheConfig.TIME_SLOTS)
+    List<TimeSlot> findAll();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.TIME_SLOTS, allEntries = true)
+    <S extends TimeSlot> S save(S timeSlot);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.TIME_SLOTS, allEntries = true)
+    <S extends TimeSlot> List<S> saveAll(Iterable<S> timeSlots);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.TIME_SLOTS, allEntries = true)
+    void deleteById(Long id);
+}
@@ -1,14 +1,34 @@
 package com.duty.system.repository;
 
+import com.duty.system.config.CacheConfig;
 import com.duty.system.entity.User;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     List<User> findByGroupId(Integer groupId);
     List<User> findBySubGroupId(Integer subGroupId);
     List<User> findByGroupIdAndStatus(Integer groupId, Integer status);
-}
\ No newline at end of file
+
+    // 全部用户走缓存，返回的列表是共享的，调用方不要修改
+    @Override
+    @Cacheable(CacheConfig.USERS)
+    List<User> findAll();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
+    <S extends User> S save(S user);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
+    <S extends User> List<S> saveAll(Iterable<S> users);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
+    void deleteById(Long id);
+}
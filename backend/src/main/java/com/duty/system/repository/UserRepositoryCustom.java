@@ -0,0 +1,19 @@
+package com.duty.system.repository;
+
+import com.duty.system.entity.User;
+
+import java.util.List;
+
+public interface UserRepositoryCustom {
+    /**
+     * 按批次通过JDBC批量插入用户，插入后回填每个用户的id
+     * 不经过JPA，调用方需要自行清除用户缓存
+     */
+    void batchInsert(List<User> users);
+    
+    /**
+     * 按批次通过JDBC按id批量更新用户的全部字段
+     * 不经过JPA，调用方需要自行清除用户缓存
+     */
+    void batchUpdate(List<User> users);
+}
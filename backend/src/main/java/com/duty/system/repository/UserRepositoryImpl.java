@@ -0,0 +1,104 @@
+package com.duty.system.repository;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * UserRepository的自定义实现，批量导入用户时直接走JDBC批处理
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO user "
+            + "(name, group_id, sub_group_id, is_manager, is_group_leader, is_sub_group_leader, status, "
+            + "leave_start_date, leave_end_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL = "UPDATE user SET "
+            + "name = ?, group_id = ?, sub_group_id = ?, is_manager = ?, is_group_leader = ?, is_sub_group_leader = ?, "
+            + "status = ?, leave_start_date = ?, leave_end_date = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DutyProperties dutyProperties;
+
+    @Override
+    public void batchInsert(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.max(1, dutyProperties.getImport().getBatchSize());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (int from = 0; from < users.size(); from += batchSize) {
+                    int to = Math.min(from + batchSize, users.size());
+                    for (int i = from; i < to; i++) {
+                        bind(ps, users.get(i));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    
+                    // 自增主键按插入顺序返回，依次回填到对应的用户上
+                    int index = from;
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next() && index < to) {
+                            users.get(index++).setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void batchUpdate(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.max(1, dutyProperties.getImport().getBatchSize());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(UPDATE_SQL)) {
+                for (int from = 0; from < users.size(); from += batchSize) {
+                    int to = Math.min(from + batchSize, users.size());
+                    for (int i = from; i < to; i++) {
+                        User user = users.get(i);
+                        bind(ps, user);
+                        ps.setLong(10, user.getId());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            return null;
+        });
+    }
+
+    private void bind(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getName());
+        ps.setInt(2, user.getGroupId());
+        ps.setObject(3, user.getSubGroupId(), Types.INTEGER);
+        ps.setBoolean(4, Boolean.TRUE.equals(user.getIsManager()));
+        ps.setBoolean(5, Boolean.TRUE.equals(user.getIsGroupLeader()));
+        ps.setBoolean(6, Boolean.TRUE.equals(user.getIsSubGroupLeader()));
+        ps.setInt(7, user.getStatus() != null ? user.getStatus() : 1);
+        ps.setTimestamp(8, toTimestamp(user.getLeaveStartDate()));
+        ps.setTimestamp(9, toTimestamp(user.getLeaveEndDate()));
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date != null ? new Timestamp(date.getTime()) : null;
+    }
+}
@@ -0,0 +1,17 @@
+package com.duty.system.repository;
+
+import com.duty.system.entity.WorkloadStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WorkloadStatRepository extends JpaRepository<WorkloadStat, Long>, WorkloadStatRepositoryCustom {
+    // 按用户和班次类型汇总[fromMonth, toMonth]的排班数，每行为(userId, type, shifts, backfills)
+    @Query("select w.userId, w.type, sum(w.shifts), sum(w.backfills) from WorkloadStat w "
+            + "where w.month >= :fromMonth and w.month <= :toMonth group by w.userId, w.type")
+    List<Object[]> sumByUserAndType(@Param("fromMonth") int fromMonth, @Param("toMonth") int toMonth);
+}
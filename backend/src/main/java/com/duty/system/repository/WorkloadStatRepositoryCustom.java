@@ -0,0 +1,13 @@
+package com.duty.system.repository;
+
+import com.duty.system.entity.WorkloadStat;
+
+import java.util.Collection;
+
+public interface WorkloadStatRepositoryCustom {
+    /**
+     * 把每条记录的shifts和backfills累加到(用户, 月份, 类型)对应的汇总行上，没有时新建
+     * 数值可以为负（删除排班时），累加后为0的行会被删除
+     */
+    void addCounts(Collection<WorkloadStat> deltas);
+}
@@ -0,0 +1,50 @@
+package com.duty.system.repository;
+
+import com.duty.system.entity.WorkloadStat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * WorkloadStatRepository的自定义实现，通过INSERT ... ON DUPLICATE KEY UPDATE在数据库中原子累加，
+ * 并发的生成和删除不需要先读后写；减到0的行按键删除
+ */
+public class WorkloadStatRepositoryImpl implements WorkloadStatRepositoryCustom {
+
+    private static final String UPSERT_SQL = "INSERT INTO duty_workload (user_id, month, type, shifts, backfills) "
+            + "VALUES (?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE shifts = shifts + VALUES(shifts), backfills = backfills + VALUES(backfills)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 只按唯一键删除刚减少过的行，走uk_duty_workload_user_month_type只锁这些行，不会锁住其他范围的生成和删除写入的行
+    private static final String DELETE_EMPTY_SQL = "DELETE FROM duty_workload "
+            + "WHERE user_id = ? AND month = ? AND type = ? AND shifts <= 0";
+
+    @Override
+    public void addCounts(Collection<WorkloadStat> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        List<Object[]> decremented = new ArrayList<>();
+        for (WorkloadStat delta : deltas) {
+            if (delta.getShifts() == 0 && delta.getBackfills() == 0) {
+                continue;
+            }
+            args.add(new Object[]{delta.getUserId(), delta.getMonth(), delta.getType(),
+                    delta.getShifts(), delta.getBackfills()});
+            if (delta.getShifts() < 0) {
+                decremented.add(new Object[]{delta.getUserId(), delta.getMonth(), delta.getType()});
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+        if (!decremented.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_EMPTY_SQL, decremented);
+        }
+    }
+}
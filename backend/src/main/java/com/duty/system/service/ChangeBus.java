@@ -0,0 +1,24 @@
+package com.duty.system.service;
+
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.entity.ChangeLog;
+
+import java.util.function.Consumer;
+
+/**
+ * 资源变更通道：写入用户、时间段、配置、请假和排班后发布一条变更，
+ * 所有节点（包括发布者自己）收到后更新该资源的版本号，其他节点同时清空对应的本地缓存
+ */
+public interface ChangeBus {
+    // 发布一次资源变更并同步投递给本节点的监听器，返回的变更带全局递增的序号
+    ChangeLog publish(ResourceVersion.Resource resource);
+
+    // 注册监听器：先同步回放每种资源最近的一次变更，之后收到各节点发布的新变更，每条变更只投递一次
+    void subscribe(Consumer<ChangeLog> listener);
+
+    // 本节点ID，与ChangeLog.nodeId比较可以区分本节点和其他节点发布的变更
+    String getNodeId();
+
+    // ETag前缀，同一通道上的节点一致；变更序号可能从头开始时（如内存通道重启）必须随之改变
+    long getEpoch();
+}
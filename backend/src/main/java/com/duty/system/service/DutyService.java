@@ -1,17 +1,60 @@
 package com.duty.system.service;
 
+import com.duty.system.dto.CacheStats;
+import com.duty.system.dto.DutyPlanView;
+import com.duty.system.dto.GenerationJob;
+import com.duty.system.dto.GenerationTrace;
+import com.duty.system.dto.PlanDiff;
+import com.duty.system.dto.PlanDiffSummary;
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.dto.UserImportReport;
+import com.duty.system.dto.UserWorkload;
 import com.duty.system.entity.Config;
 import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.Leave;
 import com.duty.system.entity.TimeSlot;
 import com.duty.system.entity.User;
+import org.springframework.data.domain.Page;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.time.YearMonth;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface DutyService {
     // 生成排班计划
     List<DutyPlan> generateDutyPlan(Date startDate, Date endDate);
     
+    // 生成排班计划，trace不为null时记录每一步排班决策
+    List<DutyPlan> generateDutyPlan(Date startDate, Date endDate, GenerationTrace trace);
+    
+    // 创建一次生成的决策记录，保留最近若干次供查询
+    GenerationTrace createGenerationTrace();
+    
+    // 获取生成的决策记录
+    GenerationTrace getGenerationTrace(String traceId);
+    
+    // 提交异步生成任务，与进行中的任务日期重叠时抛出IllegalStateException，cancelOverlapping为true时改为取消重叠的任务
+    GenerationJob submitGenerationJob(Date startDate, Date endDate, boolean cancelOverlapping);
+    
+    // 获取异步生成任务
+    GenerationJob getGenerationJob(String jobId);
+    
+    // 取消异步生成任务
+    GenerationJob cancelGenerationJob(String jobId);
+    
+    // 预览重新生成的结果：只在内存中生成并与已保存的排班比较，不写入数据库，返回按大组和日期统计的差异
+    PlanDiffSummary previewDutyPlan(Date startDate, Date endDate);
+    
+    // 请假等数据变化后增量修复[startDate, endDate]及受影响的后续排班，只写入有变化的记录，返回写入的差异
+    PlanDiff repairDutyPlans(Date startDate, Date endDate);
+    
+    // 分页获取已完成任务日期范围内的排班（按日期、id排序），任务不存在或未完成时返回null
+    Page<DutyPlan> getGenerationJobPlans(String jobId, int page, int size);
+    
     // 获取时间段配置
     List<TimeSlot> getTimeSlots();
     
@@ -24,15 +67,43 @@ public interface DutyService {
     // 保存用户
     User saveUser(User user);
     
+    // 批量新增或更新用户，有id的按id更新，matchByName为true时没有id的按唯一同名用户更新，其余新增
+    // 任意一行校验失败时整批不写入
+    UserImportReport importUsers(List<User> users, boolean matchByName);
+    
+    // 同importUsers，数据来自带表头的CSV
+    UserImportReport importUsersCsv(Reader csv, boolean matchByName) throws IOException;
+    
     // 获取排班计划
     List<DutyPlan> getDutyPlans(Date startDate, Date endDate);
     
+    // 获取带人员和时间段信息的排班计划，按日期和id排序
+    List<DutyPlanView> getDutyPlanViews(Date startDate, Date endDate);
+    
+    // 分页获取排班计划，按日期和id排序
+    Page<DutyPlan> getDutyPlans(Date startDate, Date endDate, int page, int size);
+    
+    // 游标分页获取排班计划，返回排在(afterDate, afterId)之后的最多size条，afterDate为null时从startDate开始
+    List<DutyPlan> getDutyPlansAfter(Date startDate, Date endDate, Date afterDate, Long afterId, int size);
+    
+    // 按日期和id顺序逐条读取排班计划，不把整个范围加载到内存
+    void streamDutyPlans(Date startDate, Date endDate, Consumer<DutyPlan> action);
+    
+    // 将日期范围内的排班计划按页面表格的列逐行写成csv或xlsx，写完后不关闭out
+    void exportDutyPlans(Date startDate, Date endDate, String format, OutputStream out) throws IOException;
+    
     // 删除日期范围内的排班计划
     void deleteDutyPlans(Date startDate, Date endDate);
     
     // 批量删除排班计划
     void deleteDutyPlansByIds(List<Long> ids);
     
+    // 按用户汇总[fromMonth, toMonth]内各类班次的次数，groupId不为null时只返回该大组的用户
+    List<UserWorkload> getUserWorkloads(YearMonth fromMonth, YearMonth toMonth, Integer groupId);
+    
+    // 根据全部已有排班重建工作量汇总
+    void rebuildWorkload();
+    
     // 获取所有配置
     List<Config> getConfigs();
     
@@ -42,6 +113,21 @@ public interface DutyService {
     // 根据key获取配置
     String getConfigValueByKey(String configKey);
     
-    // 删除用户
+    // 删除用户，同时删除其请假记录
     void deleteUser(Long userId);
+    
+    // 获取请假记录：startDate和endDate为null时返回该用户的全部请假，否则返回与范围有交集的请假，userId为null时不限用户
+    List<Leave> getLeaves(Long userId, Date startDate, Date endDate);
+    
+    // 新增或修改一段请假，用户不存在或日期不合法时抛出IllegalArgumentException，修改后与另一段请假起止日期相同时抛出IllegalStateException
+    Leave saveLeave(Leave leave);
+    
+    // 删除一段请假
+    void deleteLeave(Long leaveId);
+    
+    // 获取用户、时间段、配置缓存的命中统计
+    List<CacheStats> getCacheStats();
+    
+    // 获取一组资源的当前版本，任一资源通过本服务写入后版本都会变化
+    ResourceVersion getResourceVersion(ResourceVersion.Resource... resources);
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.entity.ChangeLog;
+import com.duty.system.repository.ChangeLogRepository;
+import com.duty.system.service.ChangeBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 通过duty_change_log表在节点之间传播的变更通道
+ * 发布时插入一行，在调用方的事务中时随事务一起提交，提交后才投递给本节点，回滚时本节点和其他节点都不会收到；
+ * 各节点每隔poll-interval-millis轮询序号更大的行，
+ * 其他节点的写入最迟约一个轮询间隔后可见
+ * 自增序号按分配顺序而不是提交顺序可见，后分配的序号可能先提交；遇到序号空洞时下次轮询从空洞处重新读取，
+ * 空洞超过gap-timeout-millis仍未出现的视为事务回滚，跳过；
+ * 跳过的序号在gap-recheck-millis内每次轮询再读一次，长事务迟到提交的变更仍会投递，
+ * 同时为它的资源重新发布一条变更，各节点的版本号（取最大的序号）都会越过它
+ */
+public class DatabaseChangeBus implements ChangeBus {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseChangeBus.class);
+
+    private final ChangeLogRepository changeLogRepository;
+    private final DutyProperties.Cluster properties;
+    private final String nodeId;
+    private final List<Consumer<ChangeLog>> listeners = new CopyOnWriteArrayList<>();
+
+    // 序号不大于deliveredUpTo的变更都已投递（或已作为回滚跳过）
+    private long deliveredUpTo;
+    // 序号大于deliveredUpTo、已经投递过的变更
+    private final TreeSet<Long> deliveredAbove = new TreeSet<>();
+    // deliveredUpTo之后第一次出现空洞的时间，没有空洞时为0
+    private long gapSince;
+    // 作为回滚跳过的序号及跳过的时间
+    private final TreeMap<Long, Long> skipped = new TreeMap<>();
+    private long lastPurgedAt;
+
+    private ScheduledExecutorService poller;
+
+    public DatabaseChangeBus(ChangeLogRepository changeLogRepository, DutyProperties.Cluster properties, String nodeId) {
+        this.changeLogRepository = changeLogRepository;
+        this.properties = properties;
+        this.nodeId = nodeId;
+    }
+
+    @PostConstruct
+    public void start() {
+        // 启动前的变更不再投递，资源当前的版本号在subscribe时回放
+        ChangeLog last = changeLogRepository.findTopByOrderByIdDesc();
+        deliveredUpTo = last != null ? last.getId() : 0L;
+        lastPurgedAt = System.currentTimeMillis();
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "duty-change-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1L, properties.getPollIntervalMillis());
+        poller.scheduleWithFixedDelay(this::pollSafely, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("变更通道: 数据库轮询，节点{}，间隔{}ms，起始序号{}", nodeId, interval, deliveredUpTo);
+    }
+
+    @PreDestroy
+    public void stop() {
+        poller.shutdownNow();
+    }
+
+    @Override
+    public ChangeLog publish(ResourceVersion.Resource resource) {
+        ChangeLog change = new ChangeLog();
+        change.setResource(resource);
+        change.setNodeId(nodeId);
+        change.setChangedAt(new Date());
+        ChangeLog saved = changeLogRepository.save(change);
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (this) {
+                deliver(saved);
+            }
+        });
+        return saved;
+    }
+
+    @Override
+    public void subscribe(Consumer<ChangeLog> listener) {
+        changeLogRepository.findLatestPerResource().forEach(listener);
+        listeners.add(listener);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public long getEpoch() {
+        // 序号由数据库分配，重启节点不会从头开始，所有节点使用同一个前缀
+        return 0L;
+    }
+
+    // 轮询线程中的异常不能抛出，否则后续轮询不再执行
+    private void pollSafely() {
+        try {
+            poll();
+            purgeIfDue();
+        } catch (RuntimeException e) {
+            log.warn("轮询变更记录失败", e);
+        }
+    }
+
+    void poll() {
+        long from;
+        List<Long> recheck;
+        synchronized (this) {
+            from = deliveredUpTo;
+            recheck = new ArrayList<>(skipped.keySet());
+        }
+        List<ChangeLog> changes = changeLogRepository.findTop500ByIdGreaterThanOrderByIdAsc(from);
+        List<ChangeLog> late = recheck.isEmpty() ? new ArrayList<>() : changeLogRepository.findAllById(recheck);
+        List<ResourceVersion.Resource> republish = new ArrayList<>();
+        synchronized (this) {
+            for (ChangeLog change : changes) {
+                deliver(change);
+            }
+            long now = System.currentTimeMillis();
+            advance(now);
+            for (ChangeLog change : late) {
+                if (skipped.remove(change.getId()) != null) {
+                    log.info("跳过的变更序号{}迟到提交，重新发布{}的变更", change.getId(), change.getResource());
+                    for (Consumer<ChangeLog> listener : listeners) {
+                        listener.accept(change);
+                    }
+                    republish.add(change.getResource());
+                }
+            }
+            skipped.values().removeIf(skippedAt -> now - skippedAt >= properties.getGapRecheckMillis());
+        }
+        // 不在事务中，发布后立即投递给本节点
+        for (ResourceVersion.Resource resource : republish) {
+            publish(resource);
+        }
+    }
+
+    // 投递一条未投递过的变更，调用方需持有this的锁
+    private void deliver(ChangeLog change) {
+        long id = change.getId();
+        if (id <= deliveredUpTo || !deliveredAbove.add(id)) {
+            return;
+        }
+        for (Consumer<ChangeLog> listener : listeners) {
+            listener.accept(change);
+        }
+    }
+
+    // 把连续投递的序号并入deliveredUpTo，空洞超时后跳过，调用方需持有this的锁
+    private void advance(long now) {
+        while (!deliveredAbove.isEmpty()) {
+            long next = deliveredAbove.first();
+            if (next == deliveredUpTo + 1) {
+                deliveredAbove.pollFirst();
+                deliveredUpTo = next;
+                gapSince = 0L;
+            } else if (gapSince == 0L) {
+                gapSince = now;
+                return;
+            } else if (now - gapSince >= properties.getGapTimeoutMillis()) {
+                log.debug("跳过未出现的变更序号: {} ~ {}", deliveredUpTo + 1, next - 1);
+                for (long id = deliveredUpTo + 1; id < next; id++) {
+                    skipped.put(id, now);
+                }
+                deliveredUpTo = next - 1;
+                gapSince = 0L;
+            } else {
+                return;
+            }
+        }
+        gapSince = 0L;
+    }
+
+    // 定期清理过期的变更记录，各资源最近的一次变更保留
+    private void purgeIfDue() {
+        long now = System.currentTimeMillis();
+        if (properties.getRetentionHours() <= 0 || now - lastPurgedAt < TimeUnit.HOURS.toMillis(1)) {
+            return;
+        }
+        lastPurgedAt = now;
+        List<Long> keepIds = changeLogRepository.findLatestPerResource().stream()
+                .map(ChangeLog::getId)
+                .collect(Collectors.toList());
+        if (keepIds.isEmpty()) {
+            return;
+        }
+        Date before = new Date(now - TimeUnit.HOURS.toMillis(properties.getRetentionHours()));
+        int deleted = changeLogRepository.deleteChangedBefore(before, keepIds);
+        if (deleted > 0) {
+            log.info("清理变更记录: {}条", deleted);
+        }
+    }
+}
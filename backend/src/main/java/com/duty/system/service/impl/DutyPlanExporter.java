@@ -0,0 +1,233 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.dto.DutyPlanView;
+import com.duty.system.dto.LeavePeriod;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+/**
+ * 逐行写出排班导出文件，列与排班页面的表格一致
+ * 每次导出新建一个实例，不能跨线程共用
+ */
+abstract class DutyPlanExporter implements Consumer<DutyPlanView>, Closeable {
+
+    static final String[] HEADERS = {"日期", "状态", "人员姓名", "大组", "小组", "角色", "兼大组", "兼小组", "请假时间"};
+
+    private final SimpleDateFormat dateFormat;
+
+    DutyPlanExporter() {
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.ROOT);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
+    }
+
+    static DutyPlanExporter csv(OutputStream out, int flushRows) throws IOException {
+        return new Csv(out, flushRows);
+    }
+
+    static DutyPlanExporter xlsx(OutputStream out, int rowAccessWindow) {
+        return new Xlsx(out, rowAccessWindow);
+    }
+
+    @Override
+    public void accept(DutyPlanView plan) {
+        try {
+            writeRow(toRow(plan));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    abstract void writeRow(String[] values) throws IOException;
+
+    private String[] toRow(DutyPlanView plan) {
+        StringBuilder leaveTime = new StringBuilder();
+        for (LeavePeriod leave : plan.getLeaves()) {
+            if (leaveTime.length() > 0) {
+                leaveTime.append("，");
+            }
+            leaveTime.append(dateFormat.format(leave.getStartDate())).append(" 至 ").append(dateFormat.format(leave.getEndDate()));
+        }
+        return new String[]{
+                dateFormat.format(plan.getDate()),
+                timeSlotName(plan),
+                plan.getUserName() != null ? plan.getUserName() : "未知",
+                plan.getUserName() != null ? groupName(plan.getGroupId()) : "未知",
+                plan.getSubGroupId() != null ? "小组" + plan.getSubGroupId() : "-",
+                roleName(plan),
+                plan.getDutyGroupId() != null ? groupName(plan.getDutyGroupId()) : "无",
+                plan.getDutySubGroupId() != null ? "小组" + plan.getDutySubGroupId() : "无",
+                leaveTime.toString()
+        };
+    }
+
+    // 以下名称与DutyPlan.vue中的显示保持一致
+    private static String timeSlotName(DutyPlanView plan) {
+        if (plan.getTimeSlotName() != null) {
+            return plan.getTimeSlotName();
+        }
+        if (plan.getType() == null) {
+            return "未知";
+        }
+        switch (plan.getType()) {
+            case 1:
+                return "白班";
+            case 2:
+                return "夜班";
+            case 3:
+                return "24小时班";
+            case 4:
+                return "辅助";
+            default:
+                return "未知";
+        }
+    }
+
+    private static String groupName(Integer groupId) {
+        if (groupId == null) {
+            return "未知";
+        }
+        switch (groupId) {
+            case 1:
+                return "oncall-A组";
+            case 2:
+                return "oncall-B组";
+            case 3:
+                return "goc组";
+            case 4:
+                return "pm组";
+            default:
+                return "组" + groupId;
+        }
+    }
+
+    private static String roleName(DutyPlanView plan) {
+        if (Boolean.TRUE.equals(plan.getIsManager())) {
+            return "项目经理";
+        }
+        if (Boolean.TRUE.equals(plan.getIsGroupLeader())) {
+            return "大组长";
+        }
+        if (Boolean.TRUE.equals(plan.getIsSubGroupLeader())) {
+            return "小组长";
+        }
+        return "-";
+    }
+
+    /**
+     * UTF-8带BOM的CSV，Excel直接打开时中文不乱码；每写flushRows行刷新一次，客户端可以边生成边下载
+     */
+    private static class Csv extends DutyPlanExporter {
+        private final Writer writer;
+        private final int flushRows;
+        private int rows;
+
+        Csv(OutputStream out, int flushRows) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.flushRows = Math.max(1, flushRows);
+            writer.write('\uFEFF');
+            writeRow(HEADERS);
+            writer.flush();
+        }
+
+        @Override
+        void writeRow(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(values[i]));
+            }
+            writer.write("\r\n");
+            if (++rows % flushRows == 0) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+
+        private static String escape(String value) {
+            // 以=、+、-、@开头的单元格会被Excel当作公式执行，加单引号作为文本；单独的"-"是占位符，不是公式
+            if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0 && !"-".equals(value)) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    /**
+     * 基于SXSSF的流式工作簿，内存中最多保留rowAccessWindow行，其余行写入压缩的临时文件
+     * xlsx是zip格式，整个文件在close时才写出；单个工作表写满后自动新建下一个
+     */
+    private static class Xlsx extends DutyPlanExporter {
+        // xlsx单个工作表的最大行数（含表头）
+        private static final int MAX_SHEET_ROWS = 1 << 20;
+
+        private final OutputStream out;
+        private final SXSSFWorkbook workbook;
+        private Sheet sheet;
+        private int rowIndex;
+
+        Xlsx(OutputStream out, int rowAccessWindow) {
+            this.out = out;
+            this.workbook = new SXSSFWorkbook(Math.max(1, rowAccessWindow));
+            workbook.setCompressTempFiles(true);
+        }
+
+        @Override
+        void writeRow(String[] values) {
+            if (sheet == null || rowIndex >= MAX_SHEET_ROWS) {
+                int sheets = workbook.getNumberOfSheets();
+                sheet = workbook.createSheet(sheets == 0 ? "排班计划" : "排班计划" + (sheets + 1));
+                rowIndex = 0;
+                fill(sheet.createRow(rowIndex++), HEADERS);
+            }
+            fill(sheet.createRow(rowIndex++), values);
+        }
+
+        private static void fill(Row row, String[] values) {
+            for (int i = 0; i < values.length; i++) {
+                row.createCell(i).setCellValue(values[i]);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (sheet == null) {
+                    createHeaderOnlySheet();
+                }
+                workbook.write(out);
+                out.flush();
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+        }
+
+        // 没有数据时也输出只有表头的工作表
+        private void createHeaderOnlySheet() {
+            sheet = workbook.createSheet("排班计划");
+            fill(sheet.createRow(rowIndex++), HEADERS);
+        }
+    }
+}
@@ -0,0 +1,762 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.dto.GenerationTrace;
+import com.duty.system.entity.DutyPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * 排班生成引擎
+ * 日期统一使用epoch-day整数，人员来自生成前构建的RosterSnapshot，用户使用其在名单中的下标作为稠密索引，
+ * 请假按生成范围预先构建为按天的位图（LeaveCalendar），每次可用性检查只做一次位运算，支持每个用户多段请假；
+ * 上次24小时班日期保存在按用户下标索引的int数组中，只有生成DutyPlan时才转换回Date
+ * 每天按快照中各大组的下标数组收集可用人员，不再扫描和过滤全部用户
+ * 当天是否已排班、是否在备份池等成员判断使用按用户下标索引的BitSet，每天只做常数时间的位检查
+ * 天与天之间只通过上次24小时班日期传递状态，因此可以按9天周期切分后并行生成（见generateParallel）
+ * 过程日志为DEBUG级别，决策记录只有传入GenerationTrace时才会生成，两者关闭时循环内不产生额外对象
+ */
+public class DutyPlanGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(DutyPlanGenerator.class);
+
+    // 大组ID
+    static final int GROUP_ONCALL_A = 1;
+    static final int GROUP_ONCALL_B = 2;
+    static final int GROUP_GOC = 3;
+    static final int GROUP_PM = 4;
+
+    // 班次类型
+    static final int TYPE_DAY = 1;
+    static final int TYPE_24H = 3;
+
+    // 上24小时班后需要休息到第3天
+    private static final int REST_DAYS = 3;
+    // oncall A/B组9天一个周期轮换
+    static final int ONCALL_CYCLE_DAYS = 9;
+    // oncall组内小组3天一个周期轮换
+    private static final int TEAM_CYCLE_DAYS = 3;
+    // goc小组数量：前3组每组2人，第4组1人常驻，补人后每组最多3人
+    private static final int GOC_TEAM_COUNT = 4;
+    private static final int GOC_TEAM_MAX = 3;
+
+    // 没有上过24小时班
+    private static final int NO_DUTY = Integer.MIN_VALUE;
+
+    private final ZoneId zone;
+    private final Long dayShiftId;
+    private final Long timeSlot24hId;
+
+    // 人员名单快照，以下按用户下标存放的属性都取自快照，生成过程中只读
+    private final RosterSnapshot roster;
+    private final int userCount;
+    private final Long[] userIds;
+    private final String[] userNames;
+    private final int[] groupIds;
+    private final int[] subGroupIds;
+    private final boolean hasPmGroup;
+
+    // 各阶段耗时和缺人统计，为null时不统计
+    private GenerationStats stats;
+
+    public DutyPlanGenerator(RosterSnapshot roster, Long dayShiftId, Long timeSlot24hId) {
+        this.zone = roster.zone;
+        this.dayShiftId = dayShiftId;
+        this.timeSlot24hId = timeSlot24hId;
+        this.roster = roster;
+        this.userCount = roster.userCount;
+        this.userIds = roster.userIds;
+        this.userNames = roster.userNames;
+        this.groupIds = roster.groupIds;
+        this.subGroupIds = roster.subGroupIds;
+        this.hasPmGroup = roster.hasPmGroup;
+    }
+
+    void setStats(GenerationStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * 生成[startDate, endDate]范围内每天的排班计划
+     */
+    public List<DutyPlan> generate(LocalDate startDate, LocalDate endDate) {
+        return generate(startDate, endDate, null, null);
+    }
+
+    /**
+     * 生成[startDate, endDate]范围内每天的排班计划
+     * @param trace 决策记录，为null时不记录
+     * @param onDayDone 每生成完一天回调一次已完成的天数，为null时不回调
+     */
+    public List<DutyPlan> generate(LocalDate startDate, LocalDate endDate, GenerationTrace trace, IntConsumer onDayDone) {
+        int startDay = (int) startDate.toEpochDay();
+        int endDay = (int) endDate.toEpochDay();
+        List<DutyPlan> plans = new ArrayList<>();
+        generateDays(startDay, startDay, endDay, newLast24hDays(), roster.leaveCalendar(startDay, endDay),
+                trace, onDayDone, plans);
+        return plans;
+    }
+
+    /**
+     * 并行生成[startDate, endDate]范围内每天的排班计划，结果与generate完全一致
+     * 范围按9天oncall周期对齐切分为多个分段，先顺序推进一遍只计算24小时班的轻量状态（每天只检查几个oncall组员），
+     * 得到每个分段起点的last24hDays，再在线程池中并行生成各分段
+     * @param segmentCycles 每个分段包含的9天周期数
+     * @param onDayDone 每生成完一天回调一次已完成的总天数，可能在多个线程中调用，为null时不回调
+     */
+    public List<DutyPlan> generateParallel(LocalDate startDate, LocalDate endDate, int segmentCycles,
+                                           ForkJoinPool pool, IntConsumer onDayDone) {
+        int startDay = (int) startDate.toEpochDay();
+        int endDay = (int) endDate.toEpochDay();
+        if (endDay < startDay) {
+            return new ArrayList<>();
+        }
+        int segmentDays = Math.max(1, segmentCycles) * ONCALL_CYCLE_DAYS;
+        int segmentCount = (endDay - startDay) / segmentDays + 1;
+
+        LeaveCalendar leaves = roster.leaveCalendar(startDay, endDay);
+        int[][] boundaryStates = segmentStartStates(startDay, segmentDays, segmentCount, leaves);
+
+        AtomicInteger daysDone = new AtomicInteger();
+        IntConsumer segmentDayDone = onDayDone == null ? null : d -> onDayDone.accept(daysDone.incrementAndGet());
+        List<ForkJoinTask<List<DutyPlan>>> tasks = new ArrayList<>(segmentCount);
+        for (int s = 0; s < segmentCount; s++) {
+            int segmentStart = startDay + s * segmentDays;
+            int segmentEnd = Math.min(segmentStart + segmentDays - 1, endDay);
+            int[] segmentState = boundaryStates[s];
+            tasks.add(pool.submit(() -> {
+                List<DutyPlan> segmentPlans = new ArrayList<>();
+                generateDays(startDay, segmentStart, segmentEnd, segmentState, leaves, null, segmentDayDone, segmentPlans);
+                return segmentPlans;
+            }));
+        }
+
+        // 按分段顺序合并，任一分段失败时取消其余分段
+        List<DutyPlan> plans = new ArrayList<>();
+        try {
+            for (ForkJoinTask<List<DutyPlan>> task : tasks) {
+                plans.addAll(task.join());
+            }
+        } catch (RuntimeException e) {
+            for (ForkJoinTask<List<DutyPlan>> task : tasks) {
+                task.cancel(true);
+            }
+            throw e;
+        }
+        return plans;
+    }
+
+    /**
+     * 按原排班的起始日从fromDate开始逐天重新生成，用于某个用户请假变化后的增量修复
+     * 生成状态只有上次24小时班日期，所以过了changedUntil之后，只要连续一个oncall周期的24小时班人员都与已保存的一致，
+     * 之后每天的排班都不会再变化，此时停止生成
+     * @param anchorDate 原排班的起始日
+     * @param toDate 最多重新生成到这一天（原排班的结束日）
+     * @param changedUntil 用户数据发生变化的最后一天，至少生成到这一天
+     * @param last24hDates 各用户在fromDate之前最近一个oncall周期内最后一次24小时班的日期
+     * @param stored24hUserIds 返回某天已保存的24小时班用户ID
+     * @param plans 重新生成的排班追加到这里
+     * @return 实际生成到的最后一天
+     */
+    public LocalDate regenerate(LocalDate anchorDate, LocalDate fromDate, LocalDate toDate, LocalDate changedUntil,
+                                Map<Long, LocalDate> last24hDates, Function<LocalDate, Set<Long>> stored24hUserIds,
+                                List<DutyPlan> plans) {
+        int anchorDay = (int) anchorDate.toEpochDay();
+        int fromDay = (int) fromDate.toEpochDay();
+        int toDay = (int) toDate.toEpochDay();
+        int changedDay = (int) changedUntil.toEpochDay();
+
+        int[] last24hDays = newLast24hDays();
+        for (int u = 0; u < userCount; u++) {
+            LocalDate last24hDate = last24hDates.get(userIds[u]);
+            if (last24hDate != null) {
+                last24hDays[u] = (int) last24hDate.toEpochDay();
+            }
+        }
+
+        LeaveCalendar leaves = roster.leaveCalendar(fromDay, toDay);
+        List<DutyPlan> dayPlans = new ArrayList<>();
+        Set<Long> day24hUserIds = new HashSet<>();
+        // fromDate之前的排班就是已保存的排班，视为一致
+        int stableDays = ONCALL_CYCLE_DAYS;
+        int day = fromDay;
+        for (; day <= toDay; day++) {
+            dayPlans.clear();
+            generateDays(anchorDay, day, day, last24hDays, leaves, null, null, dayPlans);
+            plans.addAll(dayPlans);
+
+            day24hUserIds.clear();
+            for (DutyPlan plan : dayPlans) {
+                if (plan.getType() == TYPE_24H) {
+                    day24hUserIds.add(plan.getUserId());
+                }
+            }
+            stableDays = day24hUserIds.equals(stored24hUserIds.apply(LocalDate.ofEpochDay(day))) ? stableDays + 1 : 0;
+            if (day >= changedDay && stableDays >= ONCALL_CYCLE_DAYS) {
+                break;
+            }
+        }
+        return LocalDate.ofEpochDay(Math.min(day, toDay));
+    }
+
+    /**
+     * 生成[fromDay, toDay]每天的排班计划
+     * @param anchorDay 排班起始日，用于计算oncall周期和小组轮换
+     * @param last24hDays 各用户上次24小时班的日期，生成过程中会被更新
+     */
+    private void generateDays(int anchorDay, int fromDay, int toDay, int[] last24hDays, LeaveCalendar leaves,
+                              GenerationTrace trace, IntConsumer onDayDone, List<DutyPlan> plans) {
+        boolean debug = log.isDebugEnabled();
+        Workspace w = new Workspace(leaves);
+        GenerationStats stats = this.stats;
+
+        for (int day = fromDay; day <= toDay; day++) {
+            long mark = stats != null ? System.nanoTime() : 0L;
+            Date currentDate = toDate(day);
+
+            // 计算当前是第几天
+            int dayOfPlan = day - anchorDay;
+
+            // 当天可用用户按大组分组，过滤掉当天请假的用户和需要休息的用户
+            collectAvailableUsers(w, day, last24hDays, trace, debug);
+            mark = lap(w, GenerationStats.Phase.AVAILABILITY, mark);
+
+            // 1. 确定当前值班的oncall组（9天一个周期）
+            boolean isAGroupOnDuty = (dayOfPlan / ONCALL_CYCLE_DAYS) % 2 == 0;
+
+            // 2. oncall在岗/不在岗的大组长和组员
+            int onDutyLeader = isAGroupOnDuty ? w.oncallALeader : w.oncallBLeader;
+            int offDutyLeader = isAGroupOnDuty ? w.oncallBLeader : w.oncallALeader;
+            IntBuffer onDutyMembers = isAGroupOnDuty ? w.oncallAMembers : w.oncallBMembers;
+            IntBuffer offDutyMembers = isAGroupOnDuty ? w.oncallBMembers : w.oncallAMembers;
+            int onDutyGroupId = isAGroupOnDuty ? GROUP_ONCALL_A : GROUP_ONCALL_B;
+
+            // 3. 处理大组长排班
+            // 处理oncall在岗大组长请假的情况：不在岗的大组长顶岗
+            int actualOnDutyLeader = onDutyLeader >= 0 ? onDutyLeader : offDutyLeader;
+            // 处理不在oncall岗的大组长请假的情况：如果goc组大组长可用，则让goc组大组长兼岗
+            int actualOffDutyLeader = offDutyLeader >= 0 ? offDutyLeader : w.gocLeader;
+            // 处理goc组大组长请假的情况：让不在oncall岗的大组长兼岗
+            int actualGocLeader = w.gocLeader >= 0 ? w.gocLeader : actualOffDutyLeader;
+
+            // oncall-A、oncall-B、goc大组长白班，实际大组长不是本组的设置兼大组
+            int oncallALeaderSlot = isAGroupOnDuty ? actualOnDutyLeader : actualOffDutyLeader;
+            int oncallBLeaderSlot = isAGroupOnDuty ? actualOffDutyLeader : actualOnDutyLeader;
+            if (oncallALeaderSlot >= 0) {
+                plans.add(newLeaderPlan(oncallALeaderSlot, currentDate, GROUP_ONCALL_A));
+                w.assignedToday.set(oncallALeaderSlot);
+                traceLeader(trace, day, oncallALeaderSlot, GROUP_ONCALL_A);
+            }
+            if (oncallBLeaderSlot >= 0) {
+                plans.add(newLeaderPlan(oncallBLeaderSlot, currentDate, GROUP_ONCALL_B));
+                w.assignedToday.set(oncallBLeaderSlot);
+                traceLeader(trace, day, oncallBLeaderSlot, GROUP_ONCALL_B);
+            }
+            if (actualGocLeader >= 0) {
+                plans.add(newLeaderPlan(actualGocLeader, currentDate, GROUP_GOC));
+                w.assignedToday.set(actualGocLeader);
+                traceLeader(trace, day, actualGocLeader, GROUP_GOC);
+            }
+            if (stats != null) {
+                countLeaderShortfall(stats, oncallALeaderSlot, GROUP_ONCALL_A);
+                countLeaderShortfall(stats, oncallBLeaderSlot, GROUP_ONCALL_B);
+                countLeaderShortfall(stats, actualGocLeader, GROUP_GOC);
+            }
+            mark = lap(w, GenerationStats.Phase.LEADERS, mark);
+
+            // 4. 处理oncall组员排班 - 只有oncall在岗大组上24小时班 休 休
+            // 每3天一个周期，每个小组在周期内轮到一次，每天都要有一组两人上24小时班
+            int teamIndex = dayOfPlan % TEAM_CYCLE_DAYS + 1;
+            int offDutyStart = selectDutyTeam(w, onDutyMembers, offDutyMembers, teamIndex);
+            if (stats != null && w.currentTeam.size() < 2) {
+                stats.addShortfall(GenerationStats.Shortfall.DUTY_24H, onDutyGroupId, 2 - w.currentTeam.size());
+            }
+            for (int i = offDutyStart; i < offDutyMembers.size(); i++) {
+                w.offDutyRemaining.set(offDutyMembers.get(i));
+            }
+
+            // 为当前小组安排24小时班
+            for (int i = 0; i < w.currentTeam.size(); i++) {
+                int u = w.currentTeam.get(i);
+                DutyPlan plan = newPlan(u, currentDate, timeSlot24hId, TYPE_24H);
+                plan.setAssignedSubGroupId(teamIndex);
+
+                // 如果是从另一组补充过来的，记录被分配到的大组和小组
+                // 补充的人已从offDutyRemaining中去掉，这里永远不成立，有意与原实现保持一致（dutyGroupId不记录）
+                if (w.offDutyRemaining.get(u)) {
+                    plan.setDutyGroupId(onDutyGroupId);
+                    plan.setDutySubGroupId(teamIndex);
+                }
+                plans.add(plan);
+                w.assignedToday.set(u);
+
+                // 记录用户上24小时班的日期
+                last24hDays[u] = day;
+
+                if (trace != null) {
+                    trace.record(day, "DUTY_24H", userIds[u], groupIds[u] == onDutyGroupId
+                            ? "小组" + teamIndex : "从大组" + groupIds[u] + "补充到小组" + teamIndex);
+                }
+            }
+
+            // 4.4 准备用于补充到其他组的人员池
+            // 不在岗oncall组剩余组员（排除当天上了24小时班的用户）
+            IntBuffer backupPool = w.backupPool;
+            for (int i = offDutyStart; i < offDutyMembers.size(); i++) {
+                int u = offDutyMembers.get(i);
+                if (!w.assignedToday.get(u)) {
+                    backupPool.add(u);
+                    w.inBackupPool.set(u);
+                }
+            }
+
+            // 如果是当前oncall组9天周期的前3天，将还没上夜班的在岗组员也加入备份池
+            int dayInCycle = dayOfPlan % ONCALL_CYCLE_DAYS;
+            if (dayInCycle < 3) {
+                int cycleStartDay = anchorDay + (dayOfPlan / ONCALL_CYCLE_DAYS) * ONCALL_CYCLE_DAYS;
+                for (int i = 0; i < onDutyMembers.size(); i++) {
+                    int u = onDutyMembers.get(i);
+                    if (w.inBackupPool.get(u) || w.assignedToday.get(u)) {
+                        continue;
+                    }
+                    // 如果该用户在当前周期开始后上过夜班，则不需要加入
+                    boolean hasWorkedInCycle = last24hDays[u] != NO_DUTY && last24hDays[u] >= cycleStartDay;
+                    if (canUserWorkOnDay(w, u, day) && !hasWorkedInCycle) {
+                        backupPool.add(u);
+                        w.inBackupPool.set(u);
+                        if (trace != null) {
+                            trace.record(day, "BACKUP_POOL", userIds[u], "周期前3天尚未上24小时班，加入备份池");
+                        }
+                    }
+                }
+            }
+
+            mark = lap(w, GenerationStats.Phase.DUTY_24H, mark);
+
+            // 5. 处理goc组员排班 - 所有goc组人员都上白班
+            // 按照规则分配当天可用的goc组员：前3组每组2人，第4组1人常驻
+            IntBuffer[] gocTeams = w.gocTeams;
+            int gocCursor = 0;
+            for (int i = 0; i < GOC_TEAM_COUNT - 1; i++) {
+                for (int j = 0; j < 2 && gocCursor < w.gocMembers.size(); j++) {
+                    gocTeams[i].add(w.gocMembers.get(gocCursor++));
+                }
+            }
+            if (gocCursor < w.gocMembers.size()) {
+                gocTeams[GOC_TEAM_COUNT - 1].add(w.gocMembers.get(gocCursor++));
+            }
+
+            if (debug) {
+                log.debug("日期 {} goc组补人前，各小组人数: {}/{}/{}/{}，备份池人数: {}", LocalDate.ofEpochDay(day),
+                        gocTeams[0].size(), gocTeams[1].size(), gocTeams[2].size(), gocTeams[3].size(), backupPool.size());
+            }
+
+            // 补充不在岗的oncall组员到goc小组：优先往单人小组（第4组）补充到3人，剩余人员按小组顺序1、2、3每组补充到3人
+            int backupCursor = 0;
+            IntBuffer singleTeam = gocTeams[GOC_TEAM_COUNT - 1];
+            while (singleTeam.size() < GOC_TEAM_MAX && backupCursor < backupPool.size()) {
+                singleTeam.add(backupPool.get(backupCursor++));
+            }
+            for (int i = 0; i < GOC_TEAM_COUNT - 1 && backupCursor < backupPool.size(); i++) {
+                while (gocTeams[i].size() < GOC_TEAM_MAX && backupCursor < backupPool.size()) {
+                    gocTeams[i].add(backupPool.get(backupCursor++));
+                }
+            }
+
+            if (debug) {
+                log.debug("日期 {} goc组补人后，各小组人数: {}/{}/{}/{}，补充到pm组人数: {}", LocalDate.ofEpochDay(day),
+                        gocTeams[0].size(), gocTeams[1].size(), gocTeams[2].size(), gocTeams[3].size(),
+                        backupPool.size() - backupCursor);
+            }
+
+            // goc组员白班排班，从其他组补充过来的记录被分配到的goc大组和小组
+            for (int j = 0; j < GOC_TEAM_COUNT; j++) {
+                for (int i = 0; i < gocTeams[j].size(); i++) {
+                    int u = gocTeams[j].get(i);
+                    DutyPlan plan = newPlan(u, currentDate, dayShiftId, TYPE_DAY);
+                    plan.setAssignedSubGroupId(j + 1);
+                    if (groupIds[u] != GROUP_GOC) {
+                        plan.setDutyGroupId(GROUP_GOC);
+                        plan.setDutySubGroupId(j + 1);
+                    }
+                    plans.add(plan);
+                    w.assignedToday.set(u);
+                    if (trace != null) {
+                        trace.record(day, "GOC", userIds[u], groupIds[u] == GROUP_GOC
+                                ? "小组" + (j + 1) : "从大组" + groupIds[u] + "补充到goc小组" + (j + 1));
+                    }
+                }
+            }
+
+            if (stats != null) {
+                for (int j = 0; j < GOC_TEAM_COUNT; j++) {
+                    int required = j < GOC_TEAM_COUNT - 1 ? 2 : 1;
+                    if (gocTeams[j].size() < required) {
+                        stats.addShortfall(GenerationStats.Shortfall.GOC, GROUP_GOC, required - gocTeams[j].size());
+                    }
+                }
+            }
+            mark = lap(w, GenerationStats.Phase.GOC_BACKFILL, mark);
+
+            // 6. 处理pm组排班（每天上白班），项目经理和大组长不要挂小组
+            for (int i = 0; i < w.pmGroup.size(); i++) {
+                int u = w.pmGroup.get(i);
+                plans.add(newPlan(u, currentDate, dayShiftId, TYPE_DAY));
+                w.assignedToday.set(u);
+            }
+
+            // 补充剩余的backupPool中的人员到pm组
+            for (int i = backupCursor; i < backupPool.size(); i++) {
+                int u = backupPool.get(i);
+                if (!canUserWorkOnDay(w, u, day)) {
+                    continue;
+                }
+
+                // 检查当天是否已经被分配到其他组
+                if (w.assignedToday.get(u)) {
+                    continue;
+                }
+
+                // 从其他组补充过来的记录被分配到的pm大组，兼小组为无
+                DutyPlan pmPlan = newPlan(u, currentDate, dayShiftId, TYPE_DAY);
+                if (groupIds[u] != GROUP_PM && hasPmGroup) {
+                    pmPlan.setDutyGroupId(GROUP_PM);
+                }
+                plans.add(pmPlan);
+                w.assignedToday.set(u);
+                if (trace != null) {
+                    trace.record(day, "PM", userIds[u], "从大组" + groupIds[u] + "补充到pm组");
+                }
+            }
+
+            lap(w, GenerationStats.Phase.PM_BACKFILL, mark);
+
+            if (onDayDone != null) {
+                onDayDone.accept(day - fromDay + 1);
+            }
+        }
+        if (stats != null) {
+            stats.addPhaseNanos(w.phaseNanos);
+        }
+    }
+
+    // 统计时把mark之后的耗时累加到phase，返回新的起点
+    private long lap(Workspace w, GenerationStats.Phase phase, long mark) {
+        if (stats == null) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        w.phaseNanos[phase.ordinal()] += now - mark;
+        return now;
+    }
+
+    private static void countLeaderShortfall(GenerationStats stats, int leader, int slotGroupId) {
+        if (leader < 0) {
+            stats.addShortfall(GenerationStats.Shortfall.LEADER, slotGroupId, 1);
+        }
+    }
+
+    /**
+     * 顺序推进24小时班状态，返回每个分段起点的last24hDays，是并行生成中唯一串行的部分
+     * 每天只检查当天可能上24小时班的oncall组员，不收集其他大组和大组长
+     */
+    int[][] segmentStartStates(int startDay, int segmentDays, int segmentCount, LeaveCalendar leaves) {
+        int[][] boundaryStates = new int[segmentCount][];
+        int[] last24hDays = newLast24hDays();
+        int[][] oncallATeams = teamMembers(GROUP_ONCALL_A);
+        int[][] oncallBTeams = teamMembers(GROUP_ONCALL_B);
+        for (int s = 0; s < segmentCount; s++) {
+            int segmentStart = startDay + s * segmentDays;
+            boundaryStates[s] = last24hDays.clone();
+            if (s < segmentCount - 1) {
+                for (int day = segmentStart; day < segmentStart + segmentDays; day++) {
+                    advanceDutyState(leaves, oncallATeams, oncallBTeams, startDay, day, last24hDays);
+                }
+            }
+        }
+        return boundaryStates;
+    }
+
+    /**
+     * 只推进一天的24小时班状态（不生成排班）
+     * 与selectDutyTeam选出的人相同：在岗大组当天小组中可用的组员，不足2人时按名单顺序补充不在岗大组的可用组员，
+     * 其他大组和大组长不影响24小时班，不需要检查
+     * @param oncallATeams oncall-A各小组的组员，见teamMembers
+     */
+    private void advanceDutyState(LeaveCalendar leaves, int[][] oncallATeams, int[][] oncallBTeams, int anchorDay,
+                                  int day, int[] last24hDays) {
+        int dayOfPlan = day - anchorDay;
+        boolean isAGroupOnDuty = (dayOfPlan / ONCALL_CYCLE_DAYS) % 2 == 0;
+        int[] team = (isAGroupOnDuty ? oncallATeams : oncallBTeams)[dayOfPlan % TEAM_CYCLE_DAYS + 1];
+        int[] offDutyMembers = roster.members(isAGroupOnDuty ? GROUP_ONCALL_B : GROUP_ONCALL_A);
+        // 每人当天只检查一次，选中后立即更新不影响其他人的休息判断
+        int selected = 0;
+        for (int u : team) {
+            if (!leaves.isOnLeave(u, day) && !isResting(u, day, last24hDays)) {
+                last24hDays[u] = day;
+                selected++;
+            }
+        }
+        for (int i = 0; selected < 2 && i < offDutyMembers.length; i++) {
+            int u = offDutyMembers[i];
+            if (!leaves.isOnLeave(u, day) && !isResting(u, day, last24hDays)) {
+                last24hDays[u] = day;
+                selected++;
+            }
+        }
+    }
+
+    /**
+     * 按小组号拆分大组的组员，下标为小组号（1~3），同一小组内保持名单顺序
+     */
+    private int[][] teamMembers(int groupId) {
+        int[] members = roster.members(groupId);
+        int[][] teams = new int[TEAM_CYCLE_DAYS + 1][];
+        for (int teamIndex = 0; teamIndex <= TEAM_CYCLE_DAYS; teamIndex++) {
+            int count = 0;
+            int[] team = new int[members.length];
+            for (int u : members) {
+                if (subGroupIds[u] == teamIndex) {
+                    team[count++] = u;
+                }
+            }
+            teams[teamIndex] = Arrays.copyOf(team, count);
+        }
+        return teams;
+    }
+
+    /**
+     * 清空工作区并按快照中各大组的组员和大组长数组收集当天可用的用户（未请假，oncall组员不在休息期），
+     * 每组取第一个可用的大组长
+     */
+    private void collectAvailableUsers(Workspace w, int day, int[] last24hDays, GenerationTrace trace, boolean debug) {
+        w.clear();
+        w.oncallALeader = firstAvailable(w, roster.leaders(GROUP_ONCALL_A), day, last24hDays, trace, debug);
+        w.oncallBLeader = firstAvailable(w, roster.leaders(GROUP_ONCALL_B), day, last24hDays, trace, debug);
+        w.gocLeader = firstAvailable(w, roster.leaders(GROUP_GOC), day, last24hDays, trace, debug);
+        collectAvailable(w, w.oncallAMembers, roster.members(GROUP_ONCALL_A), day, last24hDays, trace, debug);
+        collectAvailable(w, w.oncallBMembers, roster.members(GROUP_ONCALL_B), day, last24hDays, trace, debug);
+        collectAvailable(w, w.gocMembers, roster.members(GROUP_GOC), day, last24hDays, trace, debug);
+        collectAvailable(w, w.pmGroup, roster.members(GROUP_PM), day, last24hDays, trace, debug);
+
+        if (debug) {
+            int availableCount = w.oncallAMembers.size() + w.oncallBMembers.size() + w.gocMembers.size() + w.pmGroup.size()
+                    + (w.oncallALeader >= 0 ? 1 : 0) + (w.oncallBLeader >= 0 ? 1 : 0) + (w.gocLeader >= 0 ? 1 : 0);
+            log.debug("日期 {} 可用用户数量: {}", LocalDate.ofEpochDay(day), availableCount);
+        }
+    }
+
+    private void collectAvailable(Workspace w, IntBuffer target, int[] candidates, int day, int[] last24hDays,
+                                  GenerationTrace trace, boolean debug) {
+        for (int u : candidates) {
+            if (isAvailable(w, u, day, last24hDays, trace, debug)) {
+                target.add(u);
+            }
+        }
+    }
+
+    private int firstAvailable(Workspace w, int[] candidates, int day, int[] last24hDays, GenerationTrace trace, boolean debug) {
+        for (int u : candidates) {
+            if (isAvailable(w, u, day, last24hDays, trace, debug)) {
+                return u;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isAvailable(Workspace w, int u, int day, int[] last24hDays, GenerationTrace trace, boolean debug) {
+        if (!canUserWorkOnDay(w, u, day)) {
+            return false;
+        }
+        // 只有oncall组的用户需要检查是否需要休息（上24小时班后休息2天）
+        if (isOncall(u) && isResting(u, day, last24hDays)) {
+            if (debug) {
+                log.debug("用户 {} (ID: {}) 在 {} 上了24小时班，需要休息到 {}，因此在 {} 不可用",
+                        userNames[u], userIds[u], LocalDate.ofEpochDay(last24hDays[u]),
+                        LocalDate.ofEpochDay(last24hDays[u] + REST_DAYS), LocalDate.ofEpochDay(day));
+            }
+            if (trace != null) {
+                trace.record(day, "REST", userIds[u], "上次24小时班 " + LocalDate.ofEpochDay(last24hDays[u]));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 从当天可用的在岗组员中选出当前小组放入w.currentTeam，不足2人时按顺序从不在岗组员中补充
+     * @return 不在岗组员中未被借调部分的起始位置
+     */
+    private int selectDutyTeam(Workspace w, IntBuffer onDutyMembers, IntBuffer offDutyMembers, int teamIndex) {
+        for (int i = 0; i < onDutyMembers.size(); i++) {
+            int u = onDutyMembers.get(i);
+            if (subGroupIds[u] == teamIndex) {
+                w.currentTeam.add(u);
+            }
+        }
+        int offDutyStart = 0;
+        while (w.currentTeam.size() < 2 && offDutyStart < offDutyMembers.size()) {
+            w.currentTeam.add(offDutyMembers.get(offDutyStart++));
+        }
+        return offDutyStart;
+    }
+
+    private void traceLeader(GenerationTrace trace, int day, int u, int slotGroupId) {
+        if (trace != null) {
+            trace.record(day, "LEADER", userIds[u], groupIds[u] == slotGroupId
+                    ? "大组" + slotGroupId + "组长" : "兼大组" + slotGroupId + "组长");
+        }
+    }
+
+    private DutyPlan newLeaderPlan(int u, Date date, int slotGroupId) {
+        DutyPlan plan = newPlan(u, date, dayShiftId, TYPE_DAY);
+        // 如果实际大组长不是该大组的，设置兼大组
+        if (groupIds[u] != slotGroupId) {
+            plan.setDutyGroupId(slotGroupId);
+        }
+        return plan;
+    }
+
+    private DutyPlan newPlan(int u, Date date, Long timeSlotId, int type) {
+        DutyPlan plan = new DutyPlan();
+        plan.setUserId(userIds[u]);
+        plan.setDate(date);
+        plan.setTimeSlotId(timeSlotId);
+        plan.setType(type);
+        plan.setStatus(1);
+        return plan;
+    }
+
+    private boolean isOncall(int u) {
+        return groupIds[u] == GROUP_ONCALL_A || groupIds[u] == GROUP_ONCALL_B;
+    }
+
+    /**
+     * 距离上次24小时班不足3天则需要休息
+     */
+    private boolean isResting(int u, int day, int[] last24hDays) {
+        return last24hDays[u] != NO_DUTY && day - last24hDays[u] < REST_DAYS;
+    }
+
+    /**
+     * 检查用户在某天是否可以排班（即不在请假时间范围内，请假开始和结束当天都算请假）
+     */
+    private boolean canUserWorkOnDay(Workspace w, int u, int day) {
+        return !w.leaves.isOnLeave(u, day);
+    }
+
+    private int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    private Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant());
+    }
+
+    private int[] newLast24hDays() {
+        int[] last24hDays = new int[userCount];
+        Arrays.fill(last24hDays, NO_DUTY);
+        return last24hDays;
+    }
+
+    /**
+     * 单个线程生成排班时每天复用的缓冲区
+     */
+    private final class Workspace {
+        // 当天可用的各组组员（不含大组长）和pm组人员
+        final IntBuffer oncallAMembers = new IntBuffer(userCount);
+        final IntBuffer oncallBMembers = new IntBuffer(userCount);
+        final IntBuffer gocMembers = new IntBuffer(userCount);
+        final IntBuffer pmGroup = new IntBuffer(userCount);
+        // 当天可用的各组长，-1表示没有
+        int oncallALeader;
+        int oncallBLeader;
+        int gocLeader;
+
+        final IntBuffer currentTeam = new IntBuffer(userCount);
+        final IntBuffer backupPool = new IntBuffer(userCount);
+        final IntBuffer[] gocTeams = new IntBuffer[GOC_TEAM_COUNT];
+
+        // 当天已排班的用户、当天在备份池中的用户、不在岗组中尚未被借调的组员
+        final BitSet assignedToday = new BitSet(userCount);
+        final BitSet inBackupPool = new BitSet(userCount);
+        final BitSet offDutyRemaining = new BitSet(userCount);
+
+        // 本线程各阶段的累计耗时，生成结束时合并到GenerationStats
+        final long[] phaseNanos = new long[GenerationStats.Phase.values().length];
+
+        // 生成范围内的请假位图，只读，可能被多个线程的工作区共享
+        final LeaveCalendar leaves;
+
+        Workspace(LeaveCalendar leaves) {
+            this.leaves = leaves;
+            for (int i = 0; i < GOC_TEAM_COUNT; i++) {
+                gocTeams[i] = new IntBuffer(GOC_TEAM_MAX);
+            }
+        }
+
+        void clear() {
+            oncallAMembers.clear();
+            oncallBMembers.clear();
+            gocMembers.clear();
+            pmGroup.clear();
+            oncallALeader = -1;
+            oncallBLeader = -1;
+            gocLeader = -1;
+            currentTeam.clear();
+            backupPool.clear();
+            for (IntBuffer team : gocTeams) {
+                team.clear();
+            }
+            assignedToday.clear();
+            inBackupPool.clear();
+            offDutyRemaining.clear();
+        }
+    }
+
+    /**
+     * 可复用的int列表，避免每天重新创建List<User>
+     */
+    private static final class IntBuffer {
+        private int[] data;
+        private int size;
+
+        IntBuffer(int capacity) {
+            this.data = new int[Math.max(capacity, 1)];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
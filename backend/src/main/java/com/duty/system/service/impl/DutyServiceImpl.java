@@ -1,27 +1,96 @@
 package com.duty.system.service.impl;
 
+import com.duty.system.config.DutyProperties;
+import com.duty.system.config.CacheConfig;
+import com.duty.system.dto.CacheStats;
+import com.duty.system.dto.DutyPlanView;
+import com.duty.system.dto.GenerationJob;
+import com.duty.system.dto.GenerationTrace;
+import com.duty.system.dto.LeavePeriod;
+import com.duty.system.dto.PlanDiff;
+import com.duty.system.dto.PlanDiffSummary;
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.dto.UserImportReport;
+import com.duty.system.dto.UserWorkload;
+import com.duty.system.entity.ChangeLog;
 import com.duty.system.entity.Config;
 import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.GenerationRun;
+import com.duty.system.entity.Leave;
 import com.duty.system.entity.TimeSlot;
 import com.duty.system.entity.User;
 import com.duty.system.repository.ConfigRepository;
 import com.duty.system.repository.DutyPlanRepository;
+import com.duty.system.repository.GenerationRunRepository;
+import com.duty.system.repository.LeaveRepository;
 import com.duty.system.repository.TimeSlotRepository;
 import com.duty.system.repository.UserRepository;
+import com.duty.system.repository.WorkloadStatRepository;
+import com.duty.system.service.ChangeBus;
 import com.duty.system.service.DutyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 @Service
 public class DutyServiceImpl implements DutyService {
 
+    private static final Logger log = LoggerFactory.getLogger(DutyServiceImpl.class);
+
     @Autowired
     private UserRepository userRepository;
     
@@ -34,22 +103,269 @@ public class DutyServiceImpl implements DutyService {
     @Autowired
     private ConfigRepository configRepository;
     
+    @Autowired
+    private GenerationRunRepository generationRunRepository;
+    
+    @Autowired
+    private WorkloadStatRepository workloadStatRepository;
+    
+    @Autowired
+    private LeaveRepository leaveRepository;
+    
+    @Autowired
+    private PlanRangeLock planRangeLock;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private ChangeBus changeBus;
+    
+    @Autowired
+    private DutyProperties dutyProperties;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // 最近几次生成的决策记录，超过duty.trace.max-runs时淘汰最早的
+    private final Map<String, GenerationTrace> generationTraces = Collections.synchronizedMap(
+            new LinkedHashMap<String, GenerationTrace>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, GenerationTrace> eldest) {
+                    return size() > dutyProperties.getTrace().getMaxRuns();
+                }
+            });
+    
+    // 异步生成任务，按提交顺序保存，结束的任务超过duty.job.max-retained时淘汰最早的
+    private final Map<String, GenerationJob> generationJobs = new LinkedHashMap<>();
+    
+    // 各资源的版本号（最近一次变更的序号）和最近修改时间，按ResourceVersion.Resource的序号存放，由变更通道更新
+    private final AtomicLongArray revisions = new AtomicLongArray(ResourceVersion.Resource.values().length);
+    private final AtomicLongArray lastModified = new AtomicLongArray(ResourceVersion.Resource.values().length);
+    
+    @PostConstruct
+    public void subscribeChanges() {
+        changeBus.subscribe(this::applyChange);
+    }
+    
+    // 执行异步生成任务的有界线程池
+    private ThreadPoolExecutor generationExecutor;
+    
+    @PostConstruct
+    public void initGenerationExecutor() {
+        DutyProperties.Job jobProperties = dutyProperties.getJob();
+        AtomicInteger threadNumber = new AtomicInteger();
+        generationExecutor = new ThreadPoolExecutor(jobProperties.getConcurrency(), jobProperties.getConcurrency(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(jobProperties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "duty-generate-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    // 推送异步任务进度的单线程，SSE发送不占用生成线程
+    private ExecutorService progressExecutor;
+    
+    @PostConstruct
+    public void initProgressExecutor() {
+        progressExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "duty-job-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // 按周期分段并行生成排班的线程池
+    private ForkJoinPool segmentPool;
+    
+    @PostConstruct
+    public void initSegmentPool() {
+        int parallelism = dutyProperties.getGenerate().getParallelism();
+        segmentPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    @PreDestroy
+    public void shutdownGenerationExecutor() {
+        generationExecutor.shutdownNow();
+        segmentPool.shutdownNow();
+        progressExecutor.shutdownNow();
+    }
+    
     @Override
     public List<DutyPlan> generateDutyPlan(Date startDate, Date endDate) {
-        // 生成新排班计划前，先删除该日期范围内的现有计划，避免重复
-        deleteDutyPlans(startDate, endDate);
+        return generateDutyPlan(startDate, endDate, null);
+    }
+    
+    @Override
+    public List<DutyPlan> generateDutyPlan(Date startDate, Date endDate, GenerationTrace trace) {
+        return generateDutyPlan(startDate, endDate, trace, null);
+    }
+    
+    /**
+     * 生成并保存排班计划
+     * @param trace 决策记录，为null时不记录
+     * @param job 异步任务，不为null时更新任务进度并响应取消
+     */
+    private List<DutyPlan> generateDutyPlan(Date startDate, Date endDate, GenerationTrace trace, GenerationJob job) {
+        // 排班引擎按天（epoch-day）计算，只有生成的DutyPlan才带Date
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate start = toLocalDate(startDate, zone);
+        LocalDate end = toLocalDate(endDate, zone);
+        DutyPlanGenerator generator = createGenerator(zone, start, end);
+        IntConsumer onDayDone = null;
+        long progressInterval = dutyProperties.getJob().getProgressIntervalMillis();
+        if (job != null) {
+            ProgressThrottle dayThrottle = new ProgressThrottle(job.getDaysTotal(), progressInterval);
+            // 并行生成时各分段线程回调的顺序与计数不一致，取已报告的最大值，进度不会倒退
+            AtomicInteger maxDaysDone = new AtomicInteger();
+            onDayDone = daysDone -> {
+                if (job.isCancelRequested()) {
+                    throw new CancellationException();
+                }
+                int done = maxDaysDone.accumulateAndGet(daysDone, Math::max);
+                job.setDaysDone(done);
+                if (dayThrottle.shouldReport(done)) {
+                    job.notifyListeners(progressExecutor);
+                }
+            };
+        }
+        GenerationStats stats = new GenerationStats();
+        generator.setStats(stats);
+        boolean parallel = isParallel(start, end, trace);
+        long startedNanos = System.nanoTime();
+        List<DutyPlan> plans = runGenerator(generator, start, end, trace, onDayDone);
+        long persistStartNanos = System.nanoTime();
         
-        List<DutyPlan> plans = new ArrayList<>();
+        IntConsumer onBatchWritten = null;
+        if (job != null) {
+            job.setRowsTotal(plans.size());
+            ProgressThrottle rowThrottle = new ProgressThrottle(plans.size(), progressInterval);
+            onBatchWritten = rowsWritten -> {
+                job.setRowsWritten(rowsWritten);
+                if (rowThrottle.shouldReport(rowsWritten)) {
+                    job.notifyListeners(progressExecutor);
+                }
+            };
+        }
+        
+        // 在内存中生成完成后再写库，生成过程中取消不会影响已有排班
+        // 写库阶段按日期范围加锁并在一个事务中完成，重叠范围的生成和删除依次执行，不会交错产生重复或缺失的排班
+        IntConsumer batchWritten = onBatchWritten;
+        List<DutyPlan> saved = planRangeLock.withLock(start, end, () -> transactionTemplate.execute(
+                status -> replaceDutyPlans(startDate, endDate, plans, batchWritten, zone)));
+        bumpRevision(ResourceVersion.Resource.PLANS);
+        
+        long finishedNanos = System.nanoTime();
+        recordGenerationMetrics(stats, parallel, saved.size(), finishedNanos - persistStartNanos,
+                finishedNanos - startedNanos);
+        return saved;
+    }
+    
+    /**
+     * 删除[startDate, endDate]内的现有排班并保存新生成的排班，同时更新工作量汇总和生成记录，需要在事务中调用
+     */
+    private List<DutyPlan> replaceDutyPlans(Date startDate, Date endDate, List<DutyPlan> plans,
+                                            IntConsumer onBatchWritten, ZoneId zone) {
+        deletePlansInRange(startDate, endDate);
         
-        // 获取所有时间段
-        List<TimeSlot> timeSlots = timeSlotRepository.findByStatus(1);
+        // 批量模式下按批次JDBC插入并回填id，否则逐条saveAll
+        List<DutyPlan> saved;
+        if (dutyProperties.getPlan().isBulkInsert()) {
+            dutyPlanRepository.batchInsert(plans, onBatchWritten);
+            saved = plans;
+        } else {
+            saved = dutyPlanRepository.saveAll(plans);
+            if (onBatchWritten != null) {
+                onBatchWritten.accept(saved.size());
+            }
+        }
+        WorkloadDelta workload = new WorkloadDelta(zone);
+        workload.add(saved, 1);
+        workloadStatRepository.addCounts(workload.toStats());
+        recordGenerationRun(toLocalDate(startDate, zone), toLocalDate(endDate, zone), zone);
+        return saved;
+    }
+    
+    /**
+     * 上报一次生成的指标：各阶段耗时（并行生成时为各分段线程的累计耗时）、总耗时、生成行数和各大组缺人数
+     */
+    private void recordGenerationMetrics(GenerationStats stats, boolean parallel, int rows,
+                                         long persistNanos, long totalNanos) {
+        for (GenerationStats.Phase phase : GenerationStats.Phase.values()) {
+            phaseTimer(phase.tag).record(stats.getPhaseNanos(phase), TimeUnit.NANOSECONDS);
+        }
+        phaseTimer("persistence").record(persistNanos, TimeUnit.NANOSECONDS);
+        Timer.builder("duty.generate")
+                .description("排班生成（含保存）的总耗时")
+                .tag("mode", parallel ? "parallel" : "sequential")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(totalNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("duty.generate.rows")
+                .description("每次生成的排班行数")
+                .register(meterRegistry)
+                .record(rows);
+        for (GenerationStats.Shortfall shortfall : GenerationStats.Shortfall.values()) {
+            for (int groupId = 1; groupId < GenerationStats.GROUP_SLOTS; groupId++) {
+                long missing = stats.getShortfall(shortfall, groupId);
+                if (missing > 0) {
+                    Counter.builder("duty.generate.shortfall")
+                            .description("排班时岗位缺少的人数")
+                            .tag("slot", shortfall.tag)
+                            .tag("group", String.valueOf(groupId))
+                            .register(meterRegistry)
+                            .increment(missing);
+                }
+            }
+        }
+    }
+    
+    private Timer phaseTimer(String phase) {
+        return Timer.builder("duty.generate.phase")
+                .description("排班生成各阶段的耗时")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+    
+    // 范围较长且不需要决策记录时按周期分段并行生成，结果与顺序生成一致
+    private List<DutyPlan> runGenerator(DutyPlanGenerator generator, LocalDate start, LocalDate end,
+                                        GenerationTrace trace, IntConsumer onDayDone) {
+        if (isParallel(start, end, trace)) {
+            int segmentCycles = dutyProperties.getGenerate().getParallelSegmentCycles();
+            return generator.generateParallel(start, end, segmentCycles, segmentPool, onDayDone);
+        }
+        return generator.generate(start, end, trace, onDayDone);
+    }
+    
+    private boolean isParallel(LocalDate start, LocalDate end, GenerationTrace trace) {
+        DutyProperties.Generate generateProperties = dutyProperties.getGenerate();
+        // 单线程时分段生成没有收益，只多出分段起点计算和调度的开销
+        return generateProperties.isParallel() && trace == null && segmentPool.getParallelism() > 1
+                && end.toEpochDay() - start.toEpochDay() + 1 >= generateProperties.getParallelMinDays();
+    }
+    
+    private DutyPlanGenerator createGenerator(ZoneId zone, LocalDate from, LocalDate to) {
+        return createGenerator(zone, true, from, to);
+    }
+    
+    /**
+     * 按当前的时间段、用户和[from, to]范围内的请假创建排班引擎，引擎只能用于生成该范围内的日期
+     * @param createDefaults 没有白班或24小时班时间段时是否先创建默认的，为false时对应排班的时间段ID为null
+     */
+    private DutyPlanGenerator createGenerator(ZoneId zone, boolean createDefaults, LocalDate from, LocalDate to) {
+        // 获取所有时间段，缓存中的列表是共享的，复制一份再追加默认时间段
+        List<TimeSlot> timeSlots = new ArrayList<>(timeSlotRepository.findByStatus(1));
         
         // 获取各类型时间段
         TimeSlot dayShift = timeSlots.stream().filter(ts -> ts.getType() == 1).findFirst().orElse(null);
         TimeSlot timeSlot24h = timeSlots.stream().filter(ts -> ts.getType() == 3).findFirst().orElse(null);
         
         // 如果没有白班时间段，创建一个默认的
-        if (dayShift == null) {
+        if (dayShift == null && createDefaults) {
             dayShift = new TimeSlot();
             dayShift.setType(1);
             dayShift.setName("白班");
@@ -57,11 +373,12 @@ public class DutyServiceImpl implements DutyService {
             dayShift.setEndTime("18:00");
             dayShift.setStatus(1);
             dayShift = timeSlotRepository.save(dayShift);
+            bumpRevision(ResourceVersion.Resource.TIME_SLOTS);
             timeSlots.add(dayShift);
         }
         
         // 如果没有24小时时间段，创建一个默认的
-        if (timeSlot24h == null) {
+        if (timeSlot24h == null && createDefaults) {
             timeSlot24h = new TimeSlot();
             timeSlot24h.setType(3);
             timeSlot24h.setName("24小时班");
@@ -69,588 +386,478 @@ public class DutyServiceImpl implements DutyService {
             timeSlot24h.setEndTime("08:00");
             timeSlot24h.setStatus(1);
             timeSlot24h = timeSlotRepository.save(timeSlot24h);
+            bumpRevision(ResourceVersion.Resource.TIME_SLOTS);
             timeSlots.add(timeSlot24h);
         }
         
-        // 获取所有用户，不在这里过滤，而是在每天排班时通过canUserWorkOnDate方法检查
-        List<User> allUsers = userRepository.findAll();
-        
-        // 按大组分组
-        List<User> oncallA = allUsers.stream().filter(user -> user.getGroupId() == 1).collect(Collectors.toList());
-        List<User> oncallB = allUsers.stream().filter(user -> user.getGroupId() == 2).collect(Collectors.toList());
-        List<User> gocGroup = allUsers.stream().filter(user -> user.getGroupId() == 3).collect(Collectors.toList());
-        List<User> pmGroup = allUsers.stream().filter(user -> user.getGroupId() == 4).collect(Collectors.toList());
-        
-        // 获取各组长
-        User oncallALeader = oncallA.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
-        User oncallBLeader = oncallB.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
-        User gocLeader = gocGroup.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
-        
-        // 提取oncall组员（排除大组长）
-        List<User> oncallAMembers = oncallA.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
-        List<User> oncallBMembers = oncallB.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
+        // 获取所有用户和与范围有交集的请假构建名单快照，不在这里过滤，而是在每天排班时由生成引擎检查请假和休息
+        List<Leave> leaves = leaveRepository.findOverlapping(toDate(from, zone), toDate(to, zone));
+        RosterSnapshot roster = RosterSnapshot.of(userRepository.findAll(), leaves, zone);
+        return new DutyPlanGenerator(roster, dayShift != null ? dayShift.getId() : null,
+                timeSlot24h != null ? timeSlot24h.getId() : null);
+    }
+    
+    @Override
+    public PlanDiffSummary previewDutyPlan(Date startDate, Date endDate) {
+        // 只在内存中生成，不创建默认时间段，也不写入任何排班
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate start = toLocalDate(startDate, zone);
+        LocalDate end = toLocalDate(endDate, zone);
+        DutyPlanGenerator generator = createGenerator(zone, false, start, end);
+        List<DutyPlan> plans = runGenerator(generator, start, end, null, null);
         
-        // 提取goc组员（排除大组长）
-        List<User> gocMembers = gocGroup.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
+        // 与该范围内已保存的排班按(日期, 用户)合并比较
+        List<DutyPlan> current = dutyPlanRepository.findByDateRange(startDate, nextDayStart(endDate));
+        PlanDiff diff = new PlanDiff();
+        diff.compare(current, plans);
         
-        // 生成每天的排班
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(startDate);
-        
-        // 记录用户上24小时班的日期，用于判断休息时间
-        java.util.Map<Long, Date> userLast24hDutyDate = new java.util.HashMap<>();
+        Map<Long, Integer> groupByUser = new HashMap<>();
+        for (User user : userRepository.findAll()) {
+            groupByUser.put(user.getId(), user.getGroupId());
+        }
+        PlanDiffSummary summary = new PlanDiffSummary(start, end);
+        summary.setUnchanged(diff.getUnchanged());
+        for (DutyPlan plan : diff.getInserts()) {
+            summary.count(PlanDiffSummary.Change.INSERT, toLocalDate(plan.getDate(), zone), groupByUser.get(plan.getUserId()));
+        }
+        for (DutyPlan plan : diff.getUpdates()) {
+            summary.count(PlanDiffSummary.Change.UPDATE, toLocalDate(plan.getDate(), zone), groupByUser.get(plan.getUserId()));
+        }
+        for (DutyPlan plan : diff.getDeletes()) {
+            summary.count(PlanDiffSummary.Change.DELETE, toLocalDate(plan.getDate(), zone), groupByUser.get(plan.getUserId()));
+        }
+        return summary;
+    }
+    
+    // 记录本次生成的日期范围，被完全覆盖的旧记录不再需要
+    private void recordGenerationRun(LocalDate start, LocalDate end, ZoneId zone) {
+        GenerationRun run = new GenerationRun();
+        run.setStartDate(toDate(start, zone));
+        run.setEndDate(toDate(end, zone));
+        run.setCreatedAt(new Date());
+        generationRunRepository.deleteCoveredBy(run.getStartDate(), run.getEndDate());
+        generationRunRepository.save(run);
+    }
+    
+    @Override
+    public PlanDiff repairDutyPlans(Date startDate, Date endDate) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate from = toLocalDate(startDate, zone);
+        LocalDate changedUntil = toLocalDate(endDate, zone);
+        log.info("增量修复排班: 变化范围 {} ~ {}", from, changedUntil);
         
-        while (!calendar.getTime().after(endDate)) {
-            Date currentDate = calendar.getTime();
-            
-            // 计算当前是第几天
-            int dayOfPlan = (int) ((calendar.getTimeInMillis() - startDate.getTime()) / (1000 * 60 * 60 * 24));
-            
-            // 为当天创建可用用户列表，过滤掉当天请假的用户和需要休息的用户
-
-            List<User> dayAvailableUsers = allUsers.stream()
-                    .filter(user -> {
-                        // 首先检查是否当天可以上班
-                        if (!canUserWorkOnDate(user, currentDate)) {
-                            return false;
-                        }
-                        
-                        // 只有oncall组的用户需要检查是否需要休息（上24小时班后休息2天）
-                        // oncall组的groupId是1或2
-                        if (user.getGroupId() == 1 || user.getGroupId() == 2) {
-                            Date lastDutyDate = userLast24hDutyDate.get(user.getId());
-                            if (lastDutyDate != null) {
-                                long diffInDays = (currentDate.getTime() - lastDutyDate.getTime()) / (1000 * 60 * 60 * 24);
-                                // 如果距离上次24小时班不足3天，则需要休息
-                                if (diffInDays < 3) {
-                                    System.out.println("用户 " + user.getName() + " (ID: " + user.getId() + ") 在 " + 
-                                            lastDutyDate + " 上了24小时班，需要休息到 " + 
-                                            new Date(lastDutyDate.getTime() + 3 * 24 * 60 * 60 * 1000) + 
-                                            "，因此在 " + currentDate + " 不可用");
-                                    return false;
-                                }
-                            }
-                        }
-                        
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-            
-            System.out.println("日期 " + currentDate + " 可用用户数量: " + dayAvailableUsers.size());
-            
-            // 当天可用用户按大组分组，注意dayAvailableUsers已经过滤了需要休息的用户
-            List<User> dayOncallA = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 1).collect(Collectors.toList());
-            List<User> dayOncallB = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 2).collect(Collectors.toList());
-            List<User> dayGocGroup = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 3).collect(Collectors.toList());
-            List<User> dayPmGroup = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 4).collect(Collectors.toList());
-            
-            // 当天可用的各组长
-            User dayOncallALeader = dayOncallA.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
-            User dayOncallBLeader = dayOncallB.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
-            User dayGocLeader = dayGocGroup.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
-            
-            // 当天可用的oncall组员（排除大组长）
-            List<User> dayOncallAMembers = dayOncallA.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
-            List<User> dayOncallBMembers = dayOncallB.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
-            
-            // 当天可用的goc组员（排除大组长）
-            List<User> dayGocMembers = dayGocGroup.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
-            
-            // 1. 确定当前值班的oncall组（9天一个周期）
-            boolean isAGroupOnDuty = (dayOfPlan / 9) % 2 == 0;
-            
-            // 2. 准备值班人员
-            // 2.1 oncall在岗组和不在岗组
-            List<User> onDutyOncallGroup = isAGroupOnDuty ? dayOncallA : dayOncallB;
-            List<User> offDutyOncallGroup = isAGroupOnDuty ? dayOncallB : dayOncallA;
-            
-            // 2.2 oncall在岗大组长和不在岗大组长
-            User onDutyLeader = isAGroupOnDuty ? dayOncallALeader : dayOncallBLeader;
-            User offDutyLeader = isAGroupOnDuty ? dayOncallBLeader : dayOncallALeader;
-            
-            // 2.3 oncall在岗组员和不在岗组员
-            List<User> onDutyMembers = isAGroupOnDuty ? dayOncallAMembers : dayOncallBMembers;
-            List<User> offDutyMembers = isAGroupOnDuty ? dayOncallBMembers : dayOncallAMembers;
-            
-
-            // 3. 处理大组长排班
-            
-            // 3.1 处理oncall大组长排班
-            // oncall在岗大组长和不在岗大组长
-            User actualOnDutyLeader = onDutyLeader;
-            User actualOffDutyLeader = offDutyLeader;
-            User actualGocLeader = dayGocLeader;
-            
-            // 处理oncall在岗大组长请假的情况：不在岗的大组长顶岗
-            if (actualOnDutyLeader == null) {
-                actualOnDutyLeader = offDutyLeader;
+        // 修复最多重新生成到最后一次生成记录的结束日，在[from, repairUntil]上加锁，并在一个事务中读取、计算和写入差异
+        LocalDate repairUntil = changedUntil;
+        for (GenerationRun run : generationRunRepository.findAllByOrderByIdAsc()) {
+            LocalDate runEnd = toLocalDate(run.getEndDate(), zone);
+            if (runEnd.isAfter(repairUntil)) {
+                repairUntil = runEnd;
             }
-            
-            // 处理不在oncall岗的大组长请假的情况：如果goc组大组长可用，则让goc组大组长兼岗
-            if (actualOffDutyLeader == null && actualGocLeader != null) {
-                actualOffDutyLeader = actualGocLeader;
-            }
-            
-            // 处理goc组大组长请假的情况：让不在oncall岗的大组长兼岗
-            if (actualGocLeader == null && actualOffDutyLeader != null) {
-                actualGocLeader = actualOffDutyLeader;
-            }
-            
-            // oncall-A大组长排班
-            if (dayShift != null) {
-                // oncall-A大组长
-                if (isAGroupOnDuty) {
-                    // oncall-A组在岗，安排实际在岗大组长
-                    if (actualOnDutyLeader != null) {
-                        DutyPlan oncallALeaderPlan = new DutyPlan();
-                        oncallALeaderPlan.setUserId(actualOnDutyLeader.getId());
-                        oncallALeaderPlan.setDate(currentDate);
-                        oncallALeaderPlan.setTimeSlotId(dayShift.getId());
-                        oncallALeaderPlan.setType(1); // 白班
-                        oncallALeaderPlan.setStatus(1);
-                        plans.add(oncallALeaderPlan);
-                        
-                        // 设置兼大组：如果实际在岗大组长不是oncall-A组的，设置兼大组
-                        if (!actualOnDutyLeader.getGroupId().equals(oncallA.get(0).getGroupId())) {
-                            oncallALeaderPlan.setDutyGroupId(oncallA.get(0).getGroupId());
-                        }
-                    }
-                } else {
-                    // oncall-A组不在岗，安排实际不在岗大组长
-                    if (actualOffDutyLeader != null) {
-                        DutyPlan oncallALeaderPlan = new DutyPlan();
-                        oncallALeaderPlan.setUserId(actualOffDutyLeader.getId());
-                        oncallALeaderPlan.setDate(currentDate);
-                        oncallALeaderPlan.setTimeSlotId(dayShift.getId());
-                        oncallALeaderPlan.setType(1); // 白班
-                        oncallALeaderPlan.setStatus(1);
-                        plans.add(oncallALeaderPlan);
-                        
-                        // 设置兼大组：如果实际不在岗大组长不是oncall-A组的，设置兼大组
-                        if (!actualOffDutyLeader.getGroupId().equals(oncallA.get(0).getGroupId())) {
-                            oncallALeaderPlan.setDutyGroupId(oncallA.get(0).getGroupId());
-                        }
-                    }
-                }
-                
-                // oncall-B大组长
-                if (!isAGroupOnDuty) {
-                    // oncall-B组在岗，安排实际在岗大组长
-                    if (actualOnDutyLeader != null) {
-                        DutyPlan oncallBLeaderPlan = new DutyPlan();
-                        oncallBLeaderPlan.setUserId(actualOnDutyLeader.getId());
-                        oncallBLeaderPlan.setDate(currentDate);
-                        oncallBLeaderPlan.setTimeSlotId(dayShift.getId());
-                        oncallBLeaderPlan.setType(1); // 白班
-                        oncallBLeaderPlan.setStatus(1);
-                        plans.add(oncallBLeaderPlan);
-                        
-                        // 设置兼大组：如果实际在岗大组长不是oncall-B组的，设置兼大组
-                        if (!actualOnDutyLeader.getGroupId().equals(oncallB.get(0).getGroupId())) {
-                            oncallBLeaderPlan.setDutyGroupId(oncallB.get(0).getGroupId());
-                        }
-                    }
-                } else {
-                    // oncall-B组不在岗，安排实际不在岗大组长
-                    if (actualOffDutyLeader != null) {
-                        DutyPlan oncallBLeaderPlan = new DutyPlan();
-                        oncallBLeaderPlan.setUserId(actualOffDutyLeader.getId());
-                        oncallBLeaderPlan.setDate(currentDate);
-                        oncallBLeaderPlan.setTimeSlotId(dayShift.getId());
-                        oncallBLeaderPlan.setType(1); // 白班
-                        oncallBLeaderPlan.setStatus(1);
-                        plans.add(oncallBLeaderPlan);
-                        
-                        // 设置兼大组：如果实际不在岗大组长不是oncall-B组的，设置兼大组
-                        if (!actualOffDutyLeader.getGroupId().equals(oncallB.get(0).getGroupId())) {
-                            oncallBLeaderPlan.setDutyGroupId(oncallB.get(0).getGroupId());
-                        }
-                    }
+        }
+        LocalDate lockedUntil = repairUntil;
+        PlanDiff diff = planRangeLock.withLock(from, lockedUntil, () -> transactionTemplate.execute(
+                status -> repairInRange(from, changedUntil, lockedUntil, zone)));
+        if (!diff.isEmpty()) {
+            bumpRevision(ResourceVersion.Resource.PLANS);
+        }
+        log.info("增量修复完成: 新增 {}，更新 {}，删除 {}，未变化 {}", diff.getInserts().size(),
+                diff.getUpdates().size(), diff.getDeletes().size(), diff.getUnchanged());
+        return diff;
+    }
+    
+    /**
+     * 在已加锁的[from, repairUntil]内增量修复并写入差异，需要在事务中调用
+     */
+    private PlanDiff repairInRange(LocalDate from, LocalDate changedUntil, LocalDate repairUntil, ZoneId zone) {
+        List<GenerationRun> runs = generationRunRepository.findAllByOrderByIdAsc();
+        DutyPlanGenerator generator = createGenerator(zone, from, repairUntil);
+        PlanDiff diff = new PlanDiff();
+        while (!from.isAfter(changedUntil)) {
+            // 每天以覆盖它的最近一次生成为准，没有生成过的日期不修复
+            GenerationRun run = null;
+            for (GenerationRun candidate : runs) {
+                if (!from.isBefore(toLocalDate(candidate.getStartDate(), zone))
+                        && !from.isAfter(toLocalDate(candidate.getEndDate(), zone))) {
+                    run = candidate;
                 }
             }
-            
-            // 3.3 goc大组长排班
-            if (dayShift != null && actualGocLeader != null) {
-                DutyPlan gocLeaderPlan = new DutyPlan();
-                gocLeaderPlan.setUserId(actualGocLeader.getId());
-                gocLeaderPlan.setDate(currentDate);
-                gocLeaderPlan.setTimeSlotId(dayShift.getId());
-                gocLeaderPlan.setType(1); // 白班
-                gocLeaderPlan.setStatus(1);
-                plans.add(gocLeaderPlan);
-                
-                // 设置兼大组：如果实际goc大组长不是goc组的，设置兼大组
-                if (!actualGocLeader.getGroupId().equals(gocGroup.get(0).getGroupId())) {
-                    gocLeaderPlan.setDutyGroupId(gocGroup.get(0).getGroupId());
-                }
+            if (run == null) {
+                from = from.plusDays(1);
+                continue;
             }
             
-
-            
-            // 4. 处理oncall组员排班 - 只有oncall在岗大组上24小时班 休 休
-            // 4.1 准备备用人员池（用于补充oncall组）
-            List<User> backupPool = new ArrayList<>();
-            
-            // 4.2 24小时班 休 休 排班：每3天一个周期，每个小组在周期内轮到一次
-            // 每天都要有一组两人上24小时班，按照小组顺序轮流
-            // 例如：小组1在第1天值班，小组2在第2天值班，小组3在第3天值班
-            // 第4天回到小组1值班，以此类推
-            
-            // 记录当天上24小时班的oncall组员
-            List<User> on24hDutyUsers = new ArrayList<>();
-            
-            // 计算当前oncall组内部的天数（0-2），用于正确轮动小组
-            int onDutyGroupDay = dayOfPlan % 3;
-            
-            // 计算当前应该轮到哪个小组：每个oncall组内部每天换一个小组
-            // 小组编号从1开始
-            int teamIndex = onDutyGroupDay + 1;
-            
-            // 获取所有可用的oncall组员（排除大组长，且可以上班）
-            List<User> availableOnDutyMembers = new ArrayList<>();
-            for (User user : onDutyMembers) {
-                boolean canWork = canUserWorkOnDate(user, currentDate);
-                // 检查是否需要休息
-                if (user.getGroupId() == 1 || user.getGroupId() == 2) {
-                    Date lastDutyDate = userLast24hDutyDate.get(user.getId());
-                    if (lastDutyDate != null) {
-                        long diffInDays = (currentDate.getTime() - lastDutyDate.getTime()) / (1000 * 60 * 60 * 24);
-                        if (diffInDays < 3) {
-                            canWork = false;
-                        }
-                    }
-                }
-                if (canWork) {
-                    availableOnDutyMembers.add(user);
-                }
+            // 这次生成的排班到其结束日或被之后的生成覆盖为止，不超出加锁的范围
+            LocalDate segmentEnd = toLocalDate(run.getEndDate(), zone);
+            if (segmentEnd.isAfter(repairUntil)) {
+                segmentEnd = repairUntil;
             }
-            
-            // 从可用的oncall组员中选择当前小组的人员
-            // 按照小组编号选择对应的人员
-            List<User> currentTeam = new ArrayList<>();
-            // 查找小组编号为teamIndex的人员
-            for (User user : availableOnDutyMembers) {
-                if (user.getSubGroupId() == teamIndex) {
-                    currentTeam.add(user);
+            for (GenerationRun later : runs) {
+                LocalDate laterStart = toLocalDate(later.getStartDate(), zone);
+                if (later.getId() > run.getId() && laterStart.isAfter(from) && !laterStart.isAfter(segmentEnd)) {
+                    segmentEnd = laterStart.minusDays(1);
                 }
             }
-            
-            // 如果当前小组人数不足2人，从另一oncall组组员中补充
-            List<User> tempBackupPool = new ArrayList<>(offDutyMembers);
-            // 用于记录已经被使用的备份人员ID
-            List<Long> usedBackupUserIds = new ArrayList<>();
-            
-            while (currentTeam.size() < 2 && !tempBackupPool.isEmpty()) {
-                // 检查备份人员是否可以上班
-                User backupUser = tempBackupPool.remove(0);
-                boolean canWork = canUserWorkOnDate(backupUser, currentDate);
-                if (backupUser.getGroupId() == 1 || backupUser.getGroupId() == 2) {
-                    Date lastDutyDate = userLast24hDutyDate.get(backupUser.getId());
-                    if (lastDutyDate != null) {
-                        long diffInDays = (currentDate.getTime() - lastDutyDate.getTime()) / (1000 * 60 * 60 * 24);
-                        if (diffInDays < 3) {
-                            canWork = false;
-                        }
-                    }
-                }
-                if (canWork) {
-                    currentTeam.add(backupUser);
-                    usedBackupUserIds.add(backupUser.getId());
-                }
+            LocalDate repairedUntil = repairSegment(generator, toLocalDate(run.getStartDate(), zone), from, segmentEnd,
+                    changedUntil.isBefore(segmentEnd) ? changedUntil : segmentEnd, zone, diff);
+            from = repairedUntil.plusDays(1);
+        }
+        
+        // 工作量汇总的增减要在写入前计算，saveAll合并更新时会改写被替换的原记录
+        WorkloadDelta workload = new WorkloadDelta(zone);
+        workload.add(diff.getDeletes(), -1);
+        workload.add(diff.getReplaced(), -1);
+        workload.add(diff.getUpdates(), 1);
+        workload.add(diff.getInserts(), 1);
+        
+        // 只写入差异：先删除，再更新，最后批量插入
+        if (!diff.getDeletes().isEmpty()) {
+            List<Long> ids = new ArrayList<>(diff.getDeletes().size());
+            for (DutyPlan plan : diff.getDeletes()) {
+                ids.add(plan.getId());
             }
-            
-            // 从offDutyMembers中移除已经被使用的备份人员，避免重复分配
-            offDutyMembers.removeIf(user -> usedBackupUserIds.contains(user.getId()));
-            
-            // 为当前小组安排24小时班
-            for (User user : currentTeam) {
-                DutyPlan plan = new DutyPlan();
-                plan.setUserId(user.getId());
-                plan.setDate(currentDate);
-                plan.setTimeSlotId(timeSlot24h.getId());
-                plan.setType(3); // 24小时班
-                plan.setStatus(1);
-                // 设置小组ID
-                plan.setAssignedSubGroupId(teamIndex);
-                
-                // 设置兼大组和兼小组
-                // 如果是从另一组补充过来的，记录被分配到的大组和小组
-                if (offDutyMembers.contains(user)) {
-                    plan.setDutyGroupId(onDutyOncallGroup.get(0).getGroupId()); // 分配到的大组
-                    plan.setDutySubGroupId(teamIndex); // 分配到的小组
+            dutyPlanRepository.deleteAllByIdInBatch(ids);
+        }
+        if (!diff.getUpdates().isEmpty()) {
+            dutyPlanRepository.saveAll(diff.getUpdates());
+        }
+        if (!diff.getInserts().isEmpty()) {
+            dutyPlanRepository.batchInsert(diff.getInserts());
+        }
+        workloadStatRepository.addCounts(workload.toStats());
+        return diff;
+    }
+    
+    /**
+     * 在一次生成的范围内从from开始重新计算，直到排班与已保存的重新一致，差异追加到diff中
+     * @param anchor 这次生成的起始日
+     * @return 实际重新计算到的最后一天
+     */
+    private LocalDate repairSegment(DutyPlanGenerator generator, LocalDate anchor, LocalDate from, LocalDate segmentEnd,
+                                    LocalDate changedUntil, ZoneId zone, PlanDiff diff) {
+        // 从已保存的24小时班恢复from之前一个oncall周期内的生成状态，早于本次生成起始日的不算
+        LocalDate lookback = from.minusDays(DutyPlanGenerator.ONCALL_CYCLE_DAYS);
+        if (lookback.isBefore(anchor)) {
+            lookback = anchor;
+        }
+        Map<Long, LocalDate> last24hDates = new HashMap<>();
+        for (DutyPlan plan : dutyPlanRepository.findByTypeAndDateGreaterThanEqualAndDateLessThan(
+                DutyPlanGenerator.TYPE_24H, toDate(lookback, zone), toDate(from, zone))) {
+            last24hDates.merge(plan.getUserId(), toLocalDate(plan.getDate(), zone),
+                    (a, b) -> a.isAfter(b) ? a : b);
+        }
+        
+        // 已保存的排班按需分块读取，通常只需要读变化范围之后一两个周期
+        int chunkDays = Math.max(1, dutyProperties.getPlan().getRepairReadChunkDays());
+        Map<LocalDate, List<DutyPlan>> storedByDay = new HashMap<>();
+        LocalDate[] loadedUntil = {from.minusDays(1)};
+        Function<LocalDate, List<DutyPlan>> storedPlans = day -> {
+            while (day.isAfter(loadedUntil[0])) {
+                LocalDate chunkStart = loadedUntil[0].plusDays(1);
+                LocalDate chunkEnd = chunkStart.plusDays(chunkDays);
+                for (DutyPlan plan : dutyPlanRepository.findByDateRange(toDate(chunkStart, zone), toDate(chunkEnd, zone))) {
+                    storedByDay.computeIfAbsent(toLocalDate(plan.getDate(), zone), d -> new ArrayList<>()).add(plan);
                 }
-                
-                plans.add(plan);
-                
-                // 记录用户上24小时班的日期
-                userLast24hDutyDate.put(user.getId(), currentDate);
-                
-                // 记录当天上24小时班的用户
-                on24hDutyUsers.add(user);
+                loadedUntil[0] = chunkEnd.minusDays(1);
             }
-            
-            // 4.4 准备用于补充到其他组的人员池
-            // 只有不在岗oncall组的oncall组组员才会被添加到backupPool中，用于给goc组补岗
-            // oncall在岗组内其他小组组员不参与补岗
-            
-            // 直接使用不在岗oncall组的所有组员作为备份池
-            backupPool = new ArrayList<>(offDutyMembers);
-            
-            // 确保backupPool中不包含当天上了24小时班的用户
-            List<User> filteredBackupPool = new ArrayList<>();
-            for (User user : backupPool) {
-                boolean isOn24hDuty = false;
-                for (User on24hUser : on24hDutyUsers) {
-                    if (on24hUser.getId().equals(user.getId())) {
-                        isOn24hDuty = true;
-                        break;
-                    }
-                }
-                if (!isOn24hDuty) {
-                    filteredBackupPool.add(user);
+            return storedByDay.getOrDefault(day, Collections.emptyList());
+        };
+        
+        List<DutyPlan> regenerated = new ArrayList<>();
+        LocalDate until = generator.regenerate(anchor, from, segmentEnd, changedUntil, last24hDates, day -> {
+            Set<Long> userIds = new HashSet<>();
+            for (DutyPlan plan : storedPlans.apply(day)) {
+                if (plan.getType() == DutyPlanGenerator.TYPE_24H) {
+                    userIds.add(plan.getUserId());
                 }
             }
-            
-            // 如果是当前oncall组9天周期的前3天，将还没上夜班的组员也加入备份池
-            int dayInCycle = dayOfPlan % 9;
-            if (dayInCycle < 3) {
-                // 遍历onDutyMembers，将还没上夜班的组员加入备份池
-                for (User user : onDutyMembers) {
-                    // 检查该用户是否已经在备份池中
-                    boolean alreadyInPool = false;
-                    for (User poolUser : filteredBackupPool) {
-                        if (poolUser.getId().equals(user.getId())) {
-                            alreadyInPool = true;
-                            break;
-                        }
-                    }
-                    if (alreadyInPool) {
-                        continue;
-                    }
-                    
-                    // 检查该用户是否当天上了24小时班
-                    boolean isOn24hDuty = false;
-                    for (User on24hUser : on24hDutyUsers) {
-                        if (on24hUser.getId().equals(user.getId())) {
-                            isOn24hDuty = true;
-                            break;
-                        }
-                    }
-                    if (isOn24hDuty) {
-                        continue;
-                    }
-                    
-                    // 检查该用户是否还没在当前周期上夜班
-                    boolean hasWorkedInCycle = false;
-                    Date lastDutyDate = userLast24hDutyDate.get(user.getId());
-                    if (lastDutyDate != null) {
-                        // 计算当前9天周期的开始日期
-                        Calendar cycleStartCal = Calendar.getInstance();
-                        cycleStartCal.setTime(startDate);
-                        cycleStartCal.add(Calendar.DAY_OF_MONTH, (int) (dayOfPlan / 9) * 9);
-                        Date cycleStartDate = cycleStartCal.getTime();
-                        
-                        // 如果该用户在当前周期开始后上过夜班，则不需要加入
-                        if (lastDutyDate.after(cycleStartDate) || lastDutyDate.equals(cycleStartDate)) {
-                            hasWorkedInCycle = true;
-                        }
-                    }
-                    
-                    // 检查该用户在当前日期是否可以上班（没有请假）
-                    if (canUserWorkOnDate(user, currentDate)) {
-                        // 如果该用户还没在当前周期上夜班，则加入备份池
-                        if (!hasWorkedInCycle) {
-                            filteredBackupPool.add(user);
-                        }
+            return userIds;
+        }, regenerated);
+        
+        List<DutyPlan> current = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(until); day = day.plusDays(1)) {
+            current.addAll(storedPlans.apply(day));
+        }
+        diff.compare(current, regenerated);
+        return until;
+    }
+    
+    @Override
+    public GenerationJob submitGenerationJob(Date startDate, Date endDate, boolean cancelOverlapping) {
+        ZoneId zone = ZoneId.systemDefault();
+        long days = toLocalDate(endDate, zone).toEpochDay() - toLocalDate(startDate, zone).toEpochDay() + 1;
+        GenerationJob job = new GenerationJob(UUID.randomUUID().toString(), startDate, endDate, (int) Math.max(days, 0));
+        
+        synchronized (generationJobs) {
+            // 同一日期范围同时只允许一个任务，重叠时拒绝或取消之前的任务；只检查本节点的任务
+            for (GenerationJob other : generationJobs.values()) {
+                if (other.isActive() && other.overlaps(startDate, endDate)) {
+                    if (!cancelOverlapping) {
+                        throw new IllegalStateException("日期范围与生成任务 " + other.getId() + " 重叠");
                     }
+                    cancelGenerationJob(other);
                 }
             }
-            
-            backupPool = filteredBackupPool;
-            
-            // 5. 处理goc组员排班 - 所有goc组人员都上白班
-            // 5.1 准备goc小组
-            List<List<User>> gocTeams = new ArrayList<>();
-            for (int i = 0; i < 4; i++) {
-                gocTeams.add(new ArrayList<>());
-            }
-            
-            // 5.2 分配goc组员到小组 - 使用当天可用的goc组员
-            List<User> tempGocMembers = new ArrayList<>(dayGocMembers);
-            
-            System.out.println("日期 " + currentDate + " goc组初始分配前，dayGocMembers人数: " + dayGocMembers.size());
-            System.out.println("日期 " + currentDate + " goc组初始分配前，tempGocMembers人数: " + tempGocMembers.size());
-            
-            // 初始化所有小组为0人
-            for (int i = 0; i < 4; i++) {
-                gocTeams.get(i).clear();
-            }
-            
-            // 按照规则分配goc组员：前3组每组2人，第4组1人常驻
-            // 无论dayGocMembers人数多少，都按照这个规则进行分配
-            
-            // 先给前3组每组分配2人
-            for (int i = 0; i < 3; i++) {
-                for (int j = 0; j < 2 && !tempGocMembers.isEmpty(); j++) {
-                    gocTeams.get(i).add(tempGocMembers.remove(0));
-                }
-                System.out.println("日期 " + currentDate + " goc小组" + (i+1) + "初始分配后人数: " + gocTeams.get(i).size() + ", 剩余tempGocMembers: " + tempGocMembers.size());
-            }
-            
-            // 再给第4组分配1人（常驻）
-            if (!tempGocMembers.isEmpty()) {
-                gocTeams.get(3).add(tempGocMembers.remove(0));
-                System.out.println("日期 " + currentDate + " goc小组4初始分配后人数: " + gocTeams.get(3).size() + ", 剩余tempGocMembers: " + tempGocMembers.size());
-            } else {
-                // 如果没有足够的人员，第4组也需要保证有1人，即使从其他组补充
-                System.out.println("日期 " + currentDate + " goc小组4无初始分配，当前人数: " + gocTeams.get(3).size() + ", 剩余tempGocMembers: " + tempGocMembers.size());
-            }
-            
-            // 5.3 补充不在岗的oncall组员到goc小组 - 补充到goc组的上白班
-            // 从备份池中获取剩余人员，按照oncall组的小组顺序补充
-            List<User> remainingBackup = new ArrayList<>(backupPool);
-            
-            System.out.println("日期 " + currentDate + " goc组补人前，gocTeams各小组人数: ");
-            System.out.println("小组1: " + gocTeams.get(0).size() + "人, 小组2: " + gocTeams.get(1).size() + "人, 小组3: " + gocTeams.get(2).size() + "人, 小组4: " + gocTeams.get(3).size() + "人");
-            System.out.println("日期 " + currentDate + " goc组补人前，remainingBackup人数: " + remainingBackup.size());
-            
-            // 优先往单人小组（第4组）补充到3人
-            if (gocTeams.get(3).size() < 3 && !remainingBackup.isEmpty()) {
-                while (gocTeams.get(3).size() < 3 && !remainingBackup.isEmpty()) {
-                    User backupUser = remainingBackup.remove(0);
-                    gocTeams.get(3).add(backupUser);
-                    System.out.println("日期 " + currentDate + " goc小组4补充人员: " + backupUser.getName() + "(ID:" + backupUser.getId() + ")");
-                }
-            }
-            
-            // 剩余人员补充到goc大组的其他小组，按照小组顺序1、2、3补充，每组补充到3人
-            for (int teamNum = 0; teamNum < 3 && !remainingBackup.isEmpty(); teamNum++) {
-                while (gocTeams.get(teamNum).size() < 3 && !remainingBackup.isEmpty()) {
-                    User backupUser = remainingBackup.remove(0);
-                    gocTeams.get(teamNum).add(backupUser);
-                    System.out.println("日期 " + currentDate + " goc小组" + (teamNum + 1) + "补充人员: " + backupUser.getName() + "(ID:" + backupUser.getId() + ")");
-                }
-            }
-            
-            System.out.println("日期 " + currentDate + " goc组补人后，gocTeams各小组人数: ");
-            System.out.println("小组1: " + gocTeams.get(0).size() + "人, 小组2: " + gocTeams.get(1).size() + "人, 小组3: " + gocTeams.get(2).size() + "人, 小组4: " + gocTeams.get(3).size() + "人");
-            System.out.println("日期 " + currentDate + " goc组补人后，remainingBackup剩余人数: " + remainingBackup.size());
-            
-            // 5.4 将goc组不需要的剩余人员放回backupPool，用于补充到pm组
-            backupPool = remainingBackup;
-            System.out.println("日期 " + currentDate + " 补充到pm组的backupPool人数: " + backupPool.size());
-            
-
-            // 5.5 goc组员白班排班
-            if (dayShift != null) {
-                for (int j = 0; j < gocTeams.size(); j++) {
-                    List<User> team = gocTeams.get(j);
-                    for (User user : team) {
-                        DutyPlan plan = new DutyPlan();
-                        plan.setUserId(user.getId());
-                        plan.setDate(currentDate);
-                        plan.setTimeSlotId(dayShift.getId());
-                        plan.setType(1); // 白班
-                        plan.setStatus(1);
-                        // 设置小组ID（1-4）
-                        plan.setAssignedSubGroupId(j + 1);
-                        
-                        // 设置兼大组和兼小组
-                        // 如果是从其他组补充过来的，记录被分配到的goc大组和小组
-                        if (!gocGroup.contains(user)) {
-                            plan.setDutyGroupId(gocGroup.get(0).getGroupId()); // 分配到的goc大组
-                            plan.setDutySubGroupId(j + 1); // 分配到的goc小组
-                        }
-                        
-                        plans.add(plan);
-                    }
-                }
+            // 线程池和队列都满时抛出RejectedExecutionException
+            job.setFuture(generationExecutor.submit(() -> runGenerationJob(job)));
+            generationJobs.put(job.getId(), job);
+            evictFinishedJobs();
+        }
+        return job;
+    }
+    
+    @Override
+    public GenerationJob getGenerationJob(String jobId) {
+        synchronized (generationJobs) {
+            return generationJobs.get(jobId);
+        }
+    }
+    
+    @Override
+    public GenerationJob cancelGenerationJob(String jobId) {
+        GenerationJob job = getGenerationJob(jobId);
+        if (job != null) {
+            cancelGenerationJob(job);
+        }
+        return job;
+    }
+    
+    @Override
+    public Page<DutyPlan> getGenerationJobPlans(String jobId, int page, int size) {
+        GenerationJob job = getGenerationJob(jobId);
+        if (job == null || job.getStatus() != GenerationJob.Status.COMPLETED) {
+            return null;
+        }
+        // 任务只保留日期范围和行数，结果从duty_plan按该范围分页读取
+        return getDutyPlans(job.getStartDate(), job.getEndDate(), page, size);
+    }
+    
+    private void runGenerationJob(GenerationJob job) {
+        if (job.isCancelRequested()) {
+            finishGenerationJob(job, GenerationJob.Status.CANCELLED, null);
+            return;
+        }
+        job.setStatus(GenerationJob.Status.RUNNING);
+        job.notifyListeners(progressExecutor);
+        try {
+            generateDutyPlan(job.getStartDate(), job.getEndDate(), null, job);
+            finishGenerationJob(job, GenerationJob.Status.COMPLETED, null);
+        } catch (CancellationException e) {
+            finishGenerationJob(job, GenerationJob.Status.CANCELLED, null);
+        } catch (RuntimeException e) {
+            log.error("排班生成任务 {} 失败", job.getId(), e);
+            finishGenerationJob(job, GenerationJob.Status.FAILED, e.getMessage());
+        }
+    }
+    
+    /**
+     * 排队中的任务直接取消，执行中的任务在生成下一天前停止，已进入写库阶段的任务会执行完成
+     */
+    private void cancelGenerationJob(GenerationJob job) {
+        job.setCancelRequested(true);
+        if (job.getStatus() == GenerationJob.Status.QUEUED && job.getFuture() != null && job.getFuture().cancel(false)) {
+            finishGenerationJob(job, GenerationJob.Status.CANCELLED, null);
+        }
+    }
+    
+    private void finishGenerationJob(GenerationJob job, GenerationJob.Status status, String error) {
+        job.setError(error);
+        job.setFinishedAt(new Date());
+        job.setStatus(status);
+        job.notifyListeners(progressExecutor);
+    }
+    
+    private void evictFinishedJobs() {
+        int finished = 0;
+        for (GenerationJob job : generationJobs.values()) {
+            if (!job.isActive()) {
+                finished++;
             }
-            
-            // 6. 处理pm组排班（每天上白班）
-            if (dayShift != null) {
-                // 1. 先安排当天可用的pm组人员
-                for (User pmUser : dayPmGroup) {
-                    DutyPlan pmPlan = new DutyPlan();
-                    pmPlan.setUserId(pmUser.getId());
-                    pmPlan.setDate(currentDate);
-                    pmPlan.setTimeSlotId(dayShift.getId());
-                    pmPlan.setType(1); // 白班
-                    // 不设置小组ID，项目经理和大组长不要挂小组
-                    pmPlan.setStatus(1);
-                    
-                    plans.add(pmPlan);
-                }
-                
-                // 2. 补充剩余的backupPool中的人员到pm组
-                for (User user : backupPool) {
-                    // 检查用户是否可以在当天上班
-                    if (!canUserWorkOnDate(user, currentDate)) {
-                        continue;
-                    }
-                    
-                    // 检查是否已经被分配到其他组（仅检查当前日期）
-                    boolean isAlreadyAssigned = false;
-                    for (DutyPlan plan : plans) {
-                        // 只检查当前日期的排班计划
-                        if (plan.getDate().equals(currentDate) && plan.getUserId().equals(user.getId())) {
-                            isAlreadyAssigned = true;
-                            break;
-                        }
-                    }
-                    if (isAlreadyAssigned) {
-                        continue;
-                    }
-                    
-                    // 为该人员创建pm组排班计划
-                    DutyPlan pmPlan = new DutyPlan();
-                    pmPlan.setUserId(user.getId());
-                    pmPlan.setDate(currentDate);
-                    pmPlan.setTimeSlotId(dayShift.getId());
-                    pmPlan.setType(1); // 白班
-                    // 不设置小组ID，项目经理和大组长不要挂小组
-                    pmPlan.setStatus(1);
-                    
-                    // 设置兼大组和兼小组
-                    // 如果是从其他组补充过来的，记录被分配到的pm大组，兼小组为无
-                    if (!pmGroup.contains(user)) {
-                        // 确保pmGroup不为空，避免NullPointerException
-                        if (!pmGroup.isEmpty()) {
-                            pmPlan.setDutyGroupId(pmGroup.get(0).getGroupId()); // 分配到的pm大组
-                        }
-                        // 兼小组设为null，前端显示为"无"
-                    }
-                    
-                    plans.add(pmPlan);
-                }
+        }
+        Iterator<GenerationJob> iterator = generationJobs.values().iterator();
+        while (finished > dutyProperties.getJob().getMaxRetained() && iterator.hasNext()) {
+            if (!iterator.next().isActive()) {
+                iterator.remove();
+                finished--;
             }
-            
-            
-            calendar.add(Calendar.DAY_OF_MONTH, 1);
         }
-        
-        return dutyPlanRepository.saveAll(plans);
+    }
+    
+    @Override
+    public GenerationTrace createGenerationTrace() {
+        GenerationTrace trace = new GenerationTrace(UUID.randomUUID().toString(), dutyProperties.getTrace().getMaxEvents());
+        generationTraces.put(trace.getId(), trace);
+        return trace;
+    }
+    
+    @Override
+    public GenerationTrace getGenerationTrace(String traceId) {
+        return generationTraces.get(traceId);
     }
     
     @Override
     public void deleteDutyPlans(Date startDate, Date endDate) {
-        // 将endDate的时间设置为23:59:59，确保包含endDate当天的所有记录
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(endDate);
-        calendar.set(Calendar.HOUR_OF_DAY, 23);
-        calendar.set(Calendar.MINUTE, 59);
-        calendar.set(Calendar.SECOND, 59);
-        Date adjustedEndDate = calendar.getTime();
+        ZoneId zone = ZoneId.systemDefault();
+        planRangeLock.withLock(toLocalDate(startDate, zone), toLocalDate(endDate, zone),
+                () -> transactionTemplate.execute(status -> {
+                    deletePlansInRange(startDate, endDate);
+                    return null;
+                }));
+        bumpRevision(ResourceVersion.Resource.PLANS);
+    }
+    
+    /**
+     * 删除[startDate, endDate]内的排班并从工作量汇总中减去，需要在事务中调用
+     */
+    private void deletePlansInRange(Date startDate, Date endDate) {
+        // 删除区间为[startDate, endDate次日0点)，确保包含endDate当天的所有记录
+        Date exclusiveEndDate = nextDayStart(endDate);
         
-        List<DutyPlan> plans = dutyPlanRepository.findByDateBetween(startDate, adjustedEndDate);
-        if (!plans.isEmpty()) {
-            dutyPlanRepository.deleteAll(plans);
+        // 按块执行集合删除，不加载实体；删除前按块统计被删除的排班数，从工作量汇总中减去
+        int chunkDays = Math.max(1, dutyProperties.getPlan().getDeleteChunkDays());
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(startDate);
+        while (calendar.getTime().before(exclusiveEndDate)) {
+            Date chunkStart = calendar.getTime();
+            calendar.add(Calendar.DAY_OF_MONTH, chunkDays);
+            Date chunkEnd = calendar.getTime().before(exclusiveEndDate) ? calendar.getTime() : exclusiveEndDate;
+            ZoneId zone = ZoneId.systemDefault();
+            WorkloadDelta workload = new WorkloadDelta(zone);
+            countWorkload(workload, chunkStart, chunkEnd, null, -1, zone);
+            dutyPlanRepository.deleteByDateRange(chunkStart, chunkEnd);
+            workloadStatRepository.addCounts(workload.toStats());
         }
     }
     
     @Override
     public void deleteDutyPlansByIds(List<Long> ids) {
-        dutyPlanRepository.deleteAllById(ids);
+        ZoneId zone = ZoneId.systemDefault();
+        List<Object[]> bounds = ids.isEmpty() ? Collections.emptyList() : dutyPlanRepository.findDateBoundsByIds(ids);
+        Date first = bounds.isEmpty() ? null : (Date) bounds.get(0)[0];
+        Date last = bounds.isEmpty() ? null : (Date) bounds.get(0)[1];
+        Supplier<Void> delete = () -> transactionTemplate.execute(status -> {
+            WorkloadDelta workload = new WorkloadDelta(zone);
+            if (first != null) {
+                countWorkload(workload, first, nextDayStart(last), ids, -1, zone);
+            }
+            dutyPlanRepository.deleteAllById(ids);
+            workloadStatRepository.addCounts(workload.toStats());
+            return null;
+        });
+        // 与按日期范围的删除一样锁定这些排班所在的[最早日期, 最晚日期]，不会与重叠范围的生成或修复交错
+        if (first != null) {
+            planRangeLock.withLock(toLocalDate(first, zone), toLocalDate(last, zone), delete);
+        } else {
+            delete.get();
+        }
+        bumpRevision(ResourceVersion.Resource.PLANS);
+    }
+    
+    @Override
+    public List<UserWorkload> getUserWorkloads(YearMonth fromMonth, YearMonth toMonth, Integer groupId) {
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : userRepository.findAll()) {
+            usersById.put(user.getId(), user);
+        }
+        Map<Long, UserWorkload> workloads = new LinkedHashMap<>();
+        for (Object[] row : workloadStatRepository.sumByUserAndType(toMonth(fromMonth), toMonth(toMonth))) {
+            Long userId = (Long) row[0];
+            User user = usersById.get(userId);
+            if (groupId != null && (user == null || !groupId.equals(user.getGroupId()))) {
+                continue;
+            }
+            UserWorkload workload = workloads.computeIfAbsent(userId, id -> {
+                UserWorkload w = new UserWorkload();
+                w.setUserId(id);
+                if (user != null) {
+                    w.setUserName(user.getName());
+                    w.setGroupId(user.getGroupId());
+                    w.setSubGroupId(user.getSubGroupId());
+                }
+                return w;
+            });
+            workload.add((Integer) row[1], ((Number) row[2]).intValue(), ((Number) row[3]).intValue());
+        }
+        List<UserWorkload> result = new ArrayList<>(workloads.values());
+        result.sort(Comparator.comparing(UserWorkload::getUserId));
+        return result;
+    }
+    
+    @Override
+    public void rebuildWorkload() {
+        rebuildWorkload(false);
+    }
+    
+    // 升级后第一次启动时工作量汇总表为空，根据已有排班重建一次；多个节点同时启动时只有先拿到锁的节点重建
+    @EventListener(ApplicationReadyEvent.class)
+    public void initWorkload() {
+        if (workloadStatRepository.count() == 0 && dutyPlanRepository.count() > 0) {
+            rebuildWorkload(true);
+        }
+    }
+    
+    /**
+     * 锁定全部日期范围并在一个事务中重建，重建期间提交的生成或删除不会被重复统计或遗漏
+     * @param onlyIfEmpty 为true时拿到锁后再检查一次，汇总表已被其他节点重建则跳过
+     */
+    private void rebuildWorkload(boolean onlyIfEmpty) {
+        ZoneId zone = ZoneId.systemDefault();
+        Integer months = planRangeLock.withAllLocked(() -> transactionTemplate.execute(status -> {
+            if (onlyIfEmpty && workloadStatRepository.count() > 0) {
+                return null;
+            }
+            return replaceWorkload(zone);
+        }));
+        if (months == null) {
+            return;
+        }
+        log.info("工作量汇总重建完成，共{}个月", months);
+        bumpRevision(ResourceVersion.Resource.WORKLOAD);
+    }
+    
+    /**
+     * 清空工作量汇总并按月统计全部历史排班重新写入，返回统计的月数，需要在事务中调用
+     */
+    private int replaceWorkload(ZoneId zone) {
+        workloadStatRepository.deleteAllInBatch();
+        List<Object[]> bounds = dutyPlanRepository.findDateBounds();
+        if (bounds.isEmpty() || bounds.get(0)[0] == null) {
+            return 0;
+        }
+        // 按月分块统计，每次只在内存中保留一个月的汇总
+        LocalDate month = toLocalDate((Date) bounds.get(0)[0], zone).withDayOfMonth(1);
+        LocalDate last = toLocalDate((Date) bounds.get(0)[1], zone);
+        int months = 0;
+        for (; !month.isAfter(last); month = month.plusMonths(1)) {
+            WorkloadDelta workload = new WorkloadDelta(zone);
+            countWorkload(workload, toDate(month, zone), toDate(month.plusMonths(1), zone), null, 1, zone);
+            workloadStatRepository.addCounts(workload.toStats());
+            months++;
+        }
+        return months;
+    }
+    
+    /**
+     * 统计[fromDate, toDate)内的排班累加到workload，ids不为null时只统计这些id
+     * 区间按zone中的自然月拆开，每个月由数据库按(用户, 类型)分组，返回的行数与排班数无关
+     */
+    private void countWorkload(WorkloadDelta workload, Date fromDate, Date toDate, Collection<Long> ids, int sign,
+                               ZoneId zone) {
+        LocalDate month = toLocalDate(fromDate, zone).withDayOfMonth(1);
+        Date segmentStart = fromDate;
+        while (segmentStart.before(toDate)) {
+            month = month.plusMonths(1);
+            Date nextMonth = toDate(month, zone);
+            Date segmentEnd = nextMonth.before(toDate) ? nextMonth : toDate;
+            List<Object[]> rows = ids == null
+                    ? dutyPlanRepository.countWorkloadByDateRange(segmentStart, segmentEnd)
+                    : dutyPlanRepository.countWorkloadByIds(ids, segmentStart, segmentEnd);
+            workload.addCounted(rows, WorkloadDelta.toMonth(segmentStart, zone), sign);
+            segmentStart = segmentEnd;
+        }
+    }
+    
+    private static int toMonth(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
     }
     
     @Override
@@ -660,7 +867,9 @@ public class DutyServiceImpl implements DutyService {
     
     @Override
     public TimeSlot saveTimeSlot(TimeSlot timeSlot) {
-        return timeSlotRepository.save(timeSlot);
+        TimeSlot saved = timeSlotRepository.save(timeSlot);
+        bumpRevision(ResourceVersion.Resource.TIME_SLOTS);
+        return saved;
     }
     
     @Override
@@ -675,7 +884,154 @@ public class DutyServiceImpl implements DutyService {
             user.setLeaveStartDate(null);
             user.setLeaveEndDate(null);
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        bumpRevision(ResourceVersion.Resource.USERS);
+        return saved;
+    }
+    
+    @Override
+    @Transactional
+    public UserImportReport importUsers(List<User> users, boolean matchByName) {
+        return importUsers(users, Collections.nCopies(users.size(), null), Collections.emptySet(), matchByName);
+    }
+    
+    @Override
+    @Transactional
+    public UserImportReport importUsersCsv(Reader csv, boolean matchByName) throws IOException {
+        UserCsvReader reader = new UserCsvReader();
+        reader.read(csv, dutyProperties.getImport().getMaxRows());
+        return importUsers(reader.getUsers(), reader.getErrors(), reader.getAbsentColumns(), matchByName);
+    }
+    
+    // 先校验全部行，有任意一行失败时不写入；全部通过后按插入和更新分两批写入
+    // absentColumns为CSV中没有提供的列，更新已有用户时这些字段沿用原值
+    private UserImportReport importUsers(List<User> users, List<String> parseErrors, Set<String> absentColumns,
+                                         boolean matchByName) {
+        int maxRows = dutyProperties.getImport().getMaxRows();
+        if (users.size() > maxRows) {
+            throw new IllegalArgumentException("导入行数超过上限" + maxRows);
+        }
+        
+        Map<Long, User> existingById = new HashMap<>();
+        Map<String, List<User>> existingByName = new HashMap<>();
+        for (User existing : userRepository.findAll()) {
+            existingById.put(existing.getId(), existing);
+            existingByName.computeIfAbsent(existing.getName(), n -> new ArrayList<>()).add(existing);
+        }
+        
+        UserImportReport report = new UserImportReport();
+        List<User> inserts = new ArrayList<>();
+        List<User> updates = new ArrayList<>();
+        List<UserImportReport.Row> insertRows = new ArrayList<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            String error = parseErrors.get(i);
+            if (error == null && user.getId() == null && matchByName && user.getName() != null) {
+                // 没有id时按姓名匹配已有用户，同名用户不唯一时无法确定更新哪一个
+                List<User> sameName = existingByName.getOrDefault(user.getName().trim(), Collections.emptyList());
+                if (sameName.size() > 1) {
+                    error = "存在多个同名用户，请指定id";
+                } else if (sameName.size() == 1) {
+                    user.setId(sameName.get(0).getId());
+                }
+            }
+            if (error == null && user.getId() != null) {
+                User existing = existingById.get(user.getId());
+                if (existing == null) {
+                    error = "用户不存在";
+                } else if (!seenIds.add(user.getId())) {
+                    error = "同一用户在导入数据中重复出现";
+                } else {
+                    copyAbsentColumns(existing, user, absentColumns);
+                }
+            }
+            if (error == null) {
+                error = validateImportedUser(user);
+            }
+            
+            if (error != null) {
+                report.add(new UserImportReport.Row(i + 1, user.getId(), user.getName(),
+                        UserImportReport.Result.FAILED, error));
+                continue;
+            }
+            // 与saveUser一致，状态为正常时清空请假时间
+            if (user.getStatus() == 1) {
+                user.setLeaveStartDate(null);
+                user.setLeaveEndDate(null);
+            }
+            UserImportReport.Row row = new UserImportReport.Row(i + 1, user.getId(), user.getName(),
+                    user.getId() == null ? UserImportReport.Result.INSERTED : UserImportReport.Result.UPDATED, null);
+            report.add(row);
+            if (user.getId() == null) {
+                inserts.add(user);
+                insertRows.add(row);
+            } else {
+                updates.add(user);
+            }
+        }
+        if (report.getFailed() > 0 || users.isEmpty()) {
+            return report;
+        }
+        
+        userRepository.batchUpdate(updates);
+        userRepository.batchInsert(inserts);
+        for (int i = 0; i < inserts.size(); i++) {
+            insertRows.get(i).setId(inserts.get(i).getId());
+        }
+        report.setApplied(true);
+        
+        // 批量写入绕过了仓库上的@CacheEvict，这里手动清空用户缓存；在事务提交后再清空并发布变更，
+        // 否则提交前并发的读请求会把旧数据重新放进缓存，并以新的版本号返回
+        TransactionCallbacks.afterCommit(this::clearUserCache);
+        bumpRevision(ResourceVersion.Resource.USERS);
+        log.info("批量导入用户: 新增{}，更新{}", report.getInserted(), report.getUpdated());
+        return report;
+    }
+    
+    private static void copyAbsentColumns(User existing, User user, Set<String> absentColumns) {
+        if (absentColumns.contains("subGroupId")) {
+            user.setSubGroupId(existing.getSubGroupId());
+        }
+        if (absentColumns.contains("isManager")) {
+            user.setIsManager(existing.getIsManager());
+        }
+        if (absentColumns.contains("isGroupLeader")) {
+            user.setIsGroupLeader(existing.getIsGroupLeader());
+        }
+        if (absentColumns.contains("isSubGroupLeader")) {
+            user.setIsSubGroupLeader(existing.getIsSubGroupLeader());
+        }
+        if (absentColumns.contains("status")) {
+            user.setStatus(existing.getStatus());
+        }
+        if (absentColumns.contains("leaveStartDate")) {
+            user.setLeaveStartDate(existing.getLeaveStartDate());
+        }
+        if (absentColumns.contains("leaveEndDate")) {
+            user.setLeaveEndDate(existing.getLeaveEndDate());
+        }
+    }
+    
+    private static String validateImportedUser(User user) {
+        if (user.getName() == null || user.getName().trim().isEmpty()) {
+            return "姓名不能为空";
+        }
+        if (user.getGroupId() == null || user.getGroupId() <= 0) {
+            return "大组必须为正整数";
+        }
+        if (user.getStatus() == null) {
+            user.setStatus(1);
+        }
+        if (user.getStatus() != 0 && user.getStatus() != 1) {
+            return "状态只能为0（请假）或1（正常）";
+        }
+        if (user.getLeaveStartDate() != null && user.getLeaveEndDate() != null
+                && user.getLeaveStartDate().after(user.getLeaveEndDate())) {
+            return "请假开始时间不能晚于结束时间";
+        }
+        user.setName(user.getName().trim());
+        return null;
     }
     
     @Override
@@ -691,6 +1047,94 @@ public class DutyServiceImpl implements DutyService {
         return dutyPlanRepository.findByDateBetween(startDate, adjustedEndDate);
     }
     
+    @Override
+    public List<DutyPlanView> getDutyPlanViews(Date startDate, Date endDate) {
+        List<DutyPlanView> views = dutyPlanRepository.findViewsByDateRange(startDate, nextDayStart(endDate));
+        Map<Long, List<LeavePeriod>> leaves = leavePeriodsByUser(startDate, endDate);
+        for (DutyPlanView view : views) {
+            addLeavePeriods(view, leaves);
+        }
+        return views;
+    }
+    
+    /**
+     * 请假表中与[startDate, endDate]有交集的请假，按用户分组，每个用户的按开始日期排序
+     */
+    private Map<Long, List<LeavePeriod>> leavePeriodsByUser(Date startDate, Date endDate) {
+        Map<Long, List<LeavePeriod>> leaves = new HashMap<>();
+        for (Leave leave : leaveRepository.findOverlapping(startDate, endDate)) {
+            leaves.computeIfAbsent(leave.getUserId(), id -> new ArrayList<>())
+                    .add(new LeavePeriod(leave.getStartDate(), leave.getEndDate()));
+        }
+        return leaves;
+    }
+    
+    // 把该用户请假表中的请假追加到视图中，与User上的请假时间相同的一段不重复添加
+    private static void addLeavePeriods(DutyPlanView view, Map<Long, List<LeavePeriod>> leaves) {
+        List<LeavePeriod> userLeaves = leaves.get(view.getUserId());
+        if (userLeaves == null) {
+            return;
+        }
+        List<LeavePeriod> merged = view.getLeaves();
+        for (LeavePeriod leave : userLeaves) {
+            boolean duplicate = merged.stream().anyMatch(p -> p.getStartDate().getTime() == leave.getStartDate().getTime()
+                    && p.getEndDate().getTime() == leave.getEndDate().getTime());
+            if (!duplicate) {
+                merged.add(leave);
+            }
+        }
+        merged.sort(Comparator.comparing(LeavePeriod::getStartDate));
+    }
+    
+    @Override
+    public Page<DutyPlan> getDutyPlans(Date startDate, Date endDate, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(Math.max(0, page), clampPageSize(size), Sort.by("date", "id"));
+        return dutyPlanRepository.findByDateGreaterThanEqualAndDateLessThan(startDate, nextDayStart(endDate), pageRequest);
+    }
+    
+    @Override
+    public List<DutyPlan> getDutyPlansAfter(Date startDate, Date endDate, Date afterDate, Long afterId, int size) {
+        // 没有游标时从startDate当天第一条开始，id从1开始自增，所以afterId=0等价于不限制
+        boolean hasCursor = afterDate != null && !afterDate.before(startDate);
+        Date cursorDate = hasCursor ? afterDate : startDate;
+        long cursorId = hasCursor && afterId != null ? afterId : 0L;
+        return dutyPlanRepository.findAfter(cursorDate, cursorId, nextDayStart(endDate),
+                PageRequest.of(0, clampPageSize(size)));
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public void streamDutyPlans(Date startDate, Date endDate, Consumer<DutyPlan> action) {
+        dutyPlanRepository.streamByDateRange(startDate, nextDayStart(endDate), action);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public void exportDutyPlans(Date startDate, Date endDate, String format, OutputStream out) throws IOException {
+        DutyProperties.Export exportProperties = dutyProperties.getExport();
+        DutyPlanExporter exporter;
+        if ("csv".equals(format)) {
+            exporter = DutyPlanExporter.csv(out, exportProperties.getFlushRows());
+        } else if ("xlsx".equals(format)) {
+            exporter = DutyPlanExporter.xlsx(out, exportProperties.getRowAccessWindow());
+        } else {
+            throw new IllegalArgumentException("不支持的导出格式: " + format);
+        }
+        try (DutyPlanExporter writer = exporter) {
+            Map<Long, List<LeavePeriod>> leaves = leavePeriodsByUser(startDate, endDate);
+            dutyPlanRepository.streamViewsByDateRange(startDate, nextDayStart(endDate), view -> {
+                addLeavePeriods(view, leaves);
+                writer.accept(view);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private int clampPageSize(int size) {
+        return Math.min(Math.max(1, size), dutyProperties.getPlan().getMaxPageSize());
+    }
+    
     @Override
     public List<Config> getConfigs() {
         return configRepository.findAll();
@@ -698,7 +1142,9 @@ public class DutyServiceImpl implements DutyService {
     
     @Override
     public Config saveConfig(Config config) {
-        return configRepository.save(config);
+        Config saved = configRepository.save(config);
+        bumpRevision(ResourceVersion.Resource.CONFIGS);
+        return saved;
     }
     
     @Override
@@ -709,49 +1155,147 @@ public class DutyServiceImpl implements DutyService {
     }
     
     @Override
+    @Transactional
     public void deleteUser(Long userId) {
         userRepository.deleteById(userId);
+        leaveRepository.deleteByUserId(userId);
+        // deleteById上的@CacheEvict在提交前执行，提交前并发读取会把被删除的用户重新放进缓存，提交后再清空一次
+        TransactionCallbacks.afterCommit(this::clearUserCache);
+        bumpRevision(ResourceVersion.Resource.USERS);
+        bumpRevision(ResourceVersion.Resource.LEAVES);
+    }
+    
+    @Override
+    public List<Leave> getLeaves(Long userId, Date startDate, Date endDate) {
+        if (startDate == null || endDate == null) {
+            return leaveRepository.findByUserIdOrderByStartDateAsc(userId);
+        }
+        return userId != null
+                ? leaveRepository.findOverlappingByUserId(userId, startDate, endDate)
+                : leaveRepository.findOverlapping(startDate, endDate);
+    }
+    
+    @Override
+    public Leave saveLeave(Leave leave) {
+        if (leave.getUserId() == null || !userRepository.existsById(leave.getUserId())) {
+            throw new IllegalArgumentException("用户不存在: " + leave.getUserId());
+        }
+        if (leave.getStartDate() == null || leave.getEndDate() == null) {
+            throw new IllegalArgumentException("请假开始和结束日期不能为空");
+        }
+        if (leave.getStartDate().after(leave.getEndDate())) {
+            throw new IllegalArgumentException("请假开始日期不能晚于结束日期");
+        }
+        // 同一用户相同起止日期的请假只保存一条，重复新增返回已有的记录，修改成与另一条相同的起止日期时拒绝
+        Optional<Leave> existing = leaveRepository.findByUserIdAndStartDateAndEndDate(
+                leave.getUserId(), leave.getStartDate(), leave.getEndDate());
+        if (existing.isPresent() && !existing.get().getId().equals(leave.getId())) {
+            if (leave.getId() == null) {
+                return existing.get();
+            }
+            throw new IllegalStateException("与已有的请假 " + existing.get().getId() + " 起止日期相同");
+        }
+        Leave saved;
+        try {
+            saved = leaveRepository.saveAndFlush(leave);
+        } catch (DataIntegrityViolationException e) {
+            // 并发保存了相同起止日期的请假
+            throw new IllegalStateException("与已有的请假起止日期相同", e);
+        }
+        bumpRevision(ResourceVersion.Resource.LEAVES);
+        return saved;
+    }
+    
+    @Override
+    public void deleteLeave(Long leaveId) {
+        leaveRepository.deleteById(leaveId);
+        bumpRevision(ResourceVersion.Resource.LEAVES);
+    }
+    
+    @Override
+    public List<CacheStats> getCacheStats() {
+        List<CacheStats> stats = new ArrayList<>();
+        for (String name : new String[]{CacheConfig.USERS, CacheConfig.TIME_SLOTS, CacheConfig.CONFIGS}) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache) {
+                stats.add(CacheStats.of(name, ((CaffeineCache) cache).getNativeCache()));
+            }
+        }
+        return stats;
+    }
+    
+    @Override
+    public ResourceVersion getResourceVersion(ResourceVersion.Resource... resources) {
+        long epoch = changeBus.getEpoch();
+        StringBuilder etag = new StringBuilder("\"").append(Long.toHexString(epoch));
+        long modified = epoch;
+        for (ResourceVersion.Resource resource : resources) {
+            etag.append('-').append(revisions.get(resource.ordinal()));
+            modified = Math.max(modified, lastModified.get(resource.ordinal()));
+        }
+        return new ResourceVersion(etag.append('"').toString(), modified);
+    }
+    
+    private void clearUserCache() {
+        Cache cache = cacheManager.getCache(CacheConfig.USERS);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+    
+    // 资源写入完成后发布变更，本节点同步更新版本号，其他节点轮询到后更新，之后的条件请求会拿到新的ETag
+    private void bumpRevision(ResourceVersion.Resource resource) {
+        changeBus.publish(resource);
     }
     
     /**
-     * 检查用户在特定日期是否可以排班（即不在请假时间范围内）
-     * @param user 用户
-     * @param date 排班日期
-     * @return 是否可以排班
+     * 收到变更：版本号取变更序号，可能乱序到达，只增不减；
+     * 其他节点的写入没有经过本节点仓库上的@CacheEvict，清空对应的本地缓存
      */
-    private boolean canUserWorkOnDate(User user, Date date) {
-        // 检查用户是否在请假时间范围内
-        Date leaveStart = user.getLeaveStartDate();
-        Date leaveEnd = user.getLeaveEndDate();
-        if (leaveStart != null && leaveEnd != null) {
-            // 设置date的时间为中午，避免时区问题
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(date);
-            calendar.set(Calendar.HOUR_OF_DAY, 12);
-            calendar.set(Calendar.MINUTE, 0);
-            calendar.set(Calendar.SECOND, 0);
-            Date checkDate = calendar.getTime();
-            
-            // 同样处理请假时间的时间部分
-            Calendar leaveStartCal = Calendar.getInstance();
-            leaveStartCal.setTime(leaveStart);
-            leaveStartCal.set(Calendar.HOUR_OF_DAY, 0);
-            leaveStartCal.set(Calendar.MINUTE, 0);
-            leaveStartCal.set(Calendar.SECOND, 0);
-            Date adjustedLeaveStart = leaveStartCal.getTime();
-            
-            Calendar leaveEndCal = Calendar.getInstance();
-            leaveEndCal.setTime(leaveEnd);
-            leaveEndCal.set(Calendar.HOUR_OF_DAY, 23);
-            leaveEndCal.set(Calendar.MINUTE, 59);
-            leaveEndCal.set(Calendar.SECOND, 59);
-            Date adjustedLeaveEnd = leaveEndCal.getTime();
-            
-            // 检查checkDate是否在请假时间范围内
-            return !(checkDate.after(adjustedLeaveStart) && checkDate.before(adjustedLeaveEnd)) && 
-                   !checkDate.equals(adjustedLeaveStart) && !checkDate.equals(adjustedLeaveEnd);
+    private void applyChange(ChangeLog change) {
+        int index = change.getResource().ordinal();
+        revisions.accumulateAndGet(index, change.getId(), Math::max);
+        lastModified.accumulateAndGet(index, change.getChangedAt().getTime(), Math::max);
+        if (changeBus.getNodeId().equals(change.getNodeId())) {
+            return;
         }
-        // 如果没有设置请假时间，都可以排班
-        return true;
+        String cacheName = null;
+        switch (change.getResource()) {
+            case USERS:
+                cacheName = CacheConfig.USERS;
+                break;
+            case TIME_SLOTS:
+                cacheName = CacheConfig.TIME_SLOTS;
+                break;
+            case CONFIGS:
+                cacheName = CacheConfig.CONFIGS;
+                break;
+            default:
+                break;
+        }
+        Cache cache = cacheName != null ? cacheManager.getCache(cacheName) : null;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+    
+    private static LocalDate toLocalDate(Date date, ZoneId zone) {
+        return date.toInstant().atZone(zone).toLocalDate();
+    }
+    
+    private static Date toDate(LocalDate date, ZoneId zone) {
+        return Date.from(date.atStartOfDay(zone).toInstant());
+    }
+    
+    // 返回date次日0点，用作半开区间的结束时间
+    private static Date nextDayStart(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTime();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.duty.system.service.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次排班生成中各阶段的累计耗时和各大组的缺人数
+ * 并行生成时各分段线程先在自己的Workspace中累加，分段结束时再合并到这里
+ */
+final class GenerationStats {
+
+    // 生成阶段，tag为上报指标时使用的标签值
+    enum Phase {
+        AVAILABILITY("availability"),
+        LEADERS("leaders"),
+        DUTY_24H("duty-24h"),
+        GOC_BACKFILL("goc-backfill"),
+        PM_BACKFILL("pm-backfill");
+
+        final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    // 缺人的岗位：大组长白班、24小时班小组（每天2人）、goc小组（前3组每组2人，第4组1人）
+    enum Shortfall {
+        LEADER("leader"),
+        DUTY_24H("duty-24h"),
+        GOC("goc");
+
+        final String tag;
+
+        Shortfall(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    // 大组ID从1开始，下标0不使用
+    static final int GROUP_SLOTS = DutyPlanGenerator.GROUP_PM + 1;
+
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder[][] shortfalls = new LongAdder[Shortfall.values().length][GROUP_SLOTS];
+
+    GenerationStats() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+        for (LongAdder[] byGroup : shortfalls) {
+            for (int g = 0; g < GROUP_SLOTS; g++) {
+                byGroup[g] = new LongAdder();
+            }
+        }
+    }
+
+    void addPhaseNanos(long[] nanos) {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i].add(nanos[i]);
+        }
+    }
+
+    void addShortfall(Shortfall shortfall, int groupId, int missing) {
+        shortfalls[shortfall.ordinal()][groupId].add(missing);
+    }
+
+    long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    long getShortfall(Shortfall shortfall, int groupId) {
+        return shortfalls[shortfall.ordinal()][groupId].sum();
+    }
+}
@@ -0,0 +1,94 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.entity.ChangeLog;
+import com.duty.system.service.ChangeBus;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 只在本进程内传播的变更通道，用于单节点部署、基准测试和测试
+ * join(nodeId)得到共享同一份变更序列的另一个节点，可以在一个进程内模拟多节点；变更同步投递，没有轮询延迟，
+ * 在事务中发布时与数据库通道一样推迟到提交后投递
+ */
+public class InMemoryChangeBus implements ChangeBus {
+
+    private final Channel changes;
+    private final String nodeId;
+
+    public InMemoryChangeBus(String nodeId) {
+        this(new Channel(), nodeId);
+    }
+
+    private InMemoryChangeBus(Channel changes, String nodeId) {
+        this.changes = changes;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 加入同一通道的另一个节点
+     */
+    public InMemoryChangeBus join(String otherNodeId) {
+        return new InMemoryChangeBus(changes, otherNodeId);
+    }
+
+    @Override
+    public ChangeLog publish(ResourceVersion.Resource resource) {
+        ChangeLog change = changes.next(resource, nodeId);
+        TransactionCallbacks.afterCommit(() -> changes.deliver(change));
+        return change;
+    }
+
+    @Override
+    public void subscribe(Consumer<ChangeLog> listener) {
+        changes.subscribe(listener);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public long getEpoch() {
+        return changes.createdAt;
+    }
+
+    /**
+     * 各节点共享的变更序列，只保留每种资源最近的一次变更
+     */
+    private static final class Channel {
+        // 序号只在本进程内递增，以创建时间作为epoch，重启后旧的ETag全部失效
+        private final long createdAt = System.currentTimeMillis();
+        private final Map<ResourceVersion.Resource, ChangeLog> latest = new EnumMap<>(ResourceVersion.Resource.class);
+        private final List<Consumer<ChangeLog>> listeners = new ArrayList<>();
+        private long sequence;
+
+        synchronized ChangeLog next(ResourceVersion.Resource resource, String nodeId) {
+            ChangeLog change = new ChangeLog();
+            change.setId(++sequence);
+            change.setResource(resource);
+            change.setNodeId(nodeId);
+            change.setChangedAt(new Date());
+            return change;
+        }
+
+        // 事务提交后的变更可能乱序投递，latest只保留序号最大的
+        synchronized void deliver(ChangeLog change) {
+            latest.merge(change.getResource(), change, (a, b) -> a.getId() > b.getId() ? a : b);
+            for (Consumer<ChangeLog> listener : listeners) {
+                listener.accept(change);
+            }
+        }
+
+        synchronized void subscribe(Consumer<ChangeLog> listener) {
+            latest.values().forEach(listener);
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.duty.system.service.impl;
+
+/**
+ * 一段日期范围内的请假位图，生成前按RosterSnapshot中各用户的请假区间构建一次
+ * 按天存储，每天一行、每个用户一位，同一天的可用性检查都落在连续的几个long上，每次检查只做一次位运算
+ * 范围之外的日期退回到快照中按区间二分查找
+ * 构建后不再修改，可以在并行生成的多个线程之间共享
+ */
+final class LeaveCalendar {
+
+    private final RosterSnapshot roster;
+    private final int fromDay;
+    private final int dayCount;
+    // 每天一行占用的long个数
+    private final int words;
+    private final long[] bits;
+
+    LeaveCalendar(RosterSnapshot roster, int fromDay, int toDay) {
+        this.roster = roster;
+        this.fromDay = fromDay;
+        this.dayCount = Math.max(0, toDay - fromDay + 1);
+        this.words = (roster.userCount + 63) >>> 6;
+        this.bits = new long[dayCount * words];
+
+        for (int u = 0; u < roster.userCount; u++) {
+            int[] leaveDays = roster.leaveDays[u];
+            long mask = 1L << u;
+            int word = u >>> 6;
+            for (int i = 0; i < leaveDays.length; i += 2) {
+                int start = Math.max(leaveDays[i], fromDay);
+                int end = Math.min(leaveDays[i + 1], toDay);
+                for (int day = start; day <= end; day++) {
+                    bits[(day - fromDay) * words + word] |= mask;
+                }
+            }
+        }
+    }
+
+    /**
+     * 用户u在某天是否请假
+     */
+    boolean isOnLeave(int u, int day) {
+        int d = day - fromDay;
+        if (d < 0 || d >= dayCount) {
+            return roster.isOnLeave(u, day);
+        }
+        return (bits[d * words + (u >>> 6)] & (1L << u)) != 0;
+    }
+}
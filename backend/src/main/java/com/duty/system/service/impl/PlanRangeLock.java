@@ -0,0 +1,202 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.config.DutyProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 排班日期范围锁：生成、删除和修复排班的写库阶段按日期范围加锁，重叠的范围依次执行，不重叠的范围可以并行
+ * 进程内把日期按bucketDays天分桶，映射到固定数量的条带锁，多个条带总是按下标升序获取，不会死锁；
+ * 相距较远的桶可能映射到同一条带，此时不重叠的范围也会串行，但不影响正确性
+ * 连接MySQL且开启distributed时，再对每个条带获取一个GET_LOCK命名锁，使多个节点之间同样按范围互斥；
+ * 命名锁属于数据库会话，此时由这里开启写库事务，在事务自己的连接上获取命名锁，事务结束后在同一连接上释放；
+ * action中的transactionTemplate加入这个事务，每个写库操作只占用一个连接
+ */
+@Component
+public class PlanRangeLock {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanRangeLock.class);
+
+    @Autowired
+    private DutyProperties dutyProperties;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ReentrantLock[] stripes;
+    private int bucketDays;
+    private boolean databaseLocks;
+    // 命名锁在整个数据库服务器范围内有效，名称中带上库名，同一服务器上的其他库互不影响
+    private String lockNamePrefix;
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void init() {
+        DutyProperties.Lock properties = dutyProperties.getLock();
+        stripes = new ReentrantLock[Math.max(1, properties.getStripes())];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        bucketDays = Math.max(1, properties.getBucketDays());
+        databaseLocks = properties.isDistributed() && initLockNamePrefix();
+        waitTimer = Timer.builder("duty.plan.lock.wait")
+                .description("等待排班日期范围锁的时间")
+                .register(meterRegistry);
+        log.info("排班范围锁: {}个条带，每条带{}天，数据库命名锁{}", stripes.length, bucketDays, databaseLocks ? "开启" : "关闭");
+    }
+
+    /**
+     * 锁定[from, to]对应的全部条带后执行action，等待超过timeoutSeconds时抛出CannotAcquireLockException
+     * 使用数据库命名锁时action在这里开启的事务中执行
+     */
+    public <T> T withLock(LocalDate from, LocalDate to, Supplier<T> action) {
+        int[] indexes = stripesOf(from, to);
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + TimeUnit.SECONDS.toNanos(dutyProperties.getLock().getTimeoutSeconds());
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                if (!stripes[index].tryLock(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    throw new CannotAcquireLockException("等待排班范围锁超时: " + from + " ~ " + to);
+                }
+                locked++;
+            }
+            if (!databaseLocks) {
+                waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+                return action.get();
+            }
+            return transactionTemplate.execute(status -> {
+                lockDatabase(indexes, deadline, from, to);
+                waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+                return action.get();
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("等待排班范围锁时被中断: " + from + " ~ " + to, e);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * 锁定全部条带（多节点时包括全部命名锁）后执行action，期间任何日期范围的生成、删除和修复都不能写库
+     */
+    public <T> T withAllLocked(Supplier<T> action) {
+        return withLock(LocalDate.MIN, LocalDate.MAX, action);
+    }
+
+    /**
+     * [from, to]覆盖的桶对应的条带下标，升序且不重复；覆盖的桶数不少于条带数时锁定全部条带
+     */
+    int[] stripesOf(LocalDate from, LocalDate to) {
+        long firstBucket = Math.floorDiv(from.toEpochDay(), bucketDays);
+        long lastBucket = Math.floorDiv(to.toEpochDay(), bucketDays);
+        BitSet selected = new BitSet(stripes.length);
+        if (lastBucket - firstBucket + 1 >= stripes.length) {
+            selected.set(0, stripes.length);
+        } else {
+            for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+                selected.set((int) Math.floorMod(bucket, (long) stripes.length));
+            }
+        }
+        return selected.stream().toArray();
+    }
+
+    /**
+     * 在当前事务的连接上依次获取命名锁，事务提交或回滚后在同一连接上释放已获取的命名锁
+     */
+    private void lockDatabase(int[] indexes, long deadline, LocalDate from, LocalDate to) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        int[] databaseLocked = new int[1];
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                releaseDatabaseLocks(connection, indexes, databaseLocked[0]);
+            }
+        });
+        try {
+            for (int index : indexes) {
+                acquireDatabaseLock(connection, index, deadline, from, to);
+                databaseLocked[0]++;
+            }
+        } catch (SQLException e) {
+            throw new CannotAcquireLockException("获取数据库命名锁失败: " + from + " ~ " + to, e);
+        }
+    }
+
+    private void acquireDatabaseLock(Connection connection, int index, long deadline, LocalDate from, LocalDate to)
+            throws SQLException {
+        // GET_LOCK的超时时间以秒为单位，向上取整
+        long timeoutSeconds = Math.max(0L, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime() + 999_999_999L));
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, lockNamePrefix + index);
+            statement.setLong(2, timeoutSeconds);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // 1表示获取成功，0表示超时，NULL表示出错
+                if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                    throw new CannotAcquireLockException("等待数据库命名锁超时: " + from + " ~ " + to);
+                }
+            }
+        }
+    }
+
+    private void releaseDatabaseLocks(Connection connection, int[] indexes, int count) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            for (int i = count - 1; i >= 0; i--) {
+                statement.setString(1, lockNamePrefix + indexes[i]);
+                statement.execute();
+            }
+        } catch (SQLException e) {
+            // 释放失败的命名锁由该连接的会话继续持有，直到连接被连接池关闭
+            log.warn("释放数据库命名锁失败", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * 连接的是MySQL时按库名设置命名锁前缀并返回true，否则返回false
+     */
+    private boolean initLockNamePrefix() {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if (!"MySQL".equalsIgnoreCase(product) && !"MariaDB".equalsIgnoreCase(product)) {
+                return false;
+            }
+            lockNamePrefix = "duty_plan_range:" + connection.getCatalog() + ":";
+            return true;
+        } catch (SQLException e) {
+            log.warn("无法识别数据库类型，不使用数据库命名锁", e);
+            return false;
+        }
+    }
+}
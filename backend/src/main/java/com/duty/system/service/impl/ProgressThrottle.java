@@ -0,0 +1,40 @@
+package com.duty.system.service.impl;
+
+/**
+ * 进度上报节流：百分比变化且距上次上报超过最小间隔时才上报，完成时总是上报
+ * <p>
+ * 并行生成时会在多个线程中调用
+ */
+final class ProgressThrottle {
+
+    private final int total;
+
+    private final long minIntervalNanos;
+
+    private int lastPercent = -1;
+
+    private long lastReportNanos;
+
+    ProgressThrottle(int total, long minIntervalMillis) {
+        this.total = total;
+        this.minIntervalNanos = minIntervalMillis * 1_000_000L;
+    }
+
+    synchronized boolean shouldReport(int done) {
+        return shouldReport(done, System.nanoTime());
+    }
+
+    synchronized boolean shouldReport(int done, long nowNanos) {
+        int percent = total <= 0 ? 100 : (int) ((long) Math.min(done, total) * 100 / total);
+        // 并行生成时回调可能乱序到达，只上报增长的进度
+        if (percent <= lastPercent) {
+            return false;
+        }
+        if (percent < 100 && lastPercent >= 0 && nowNanos - lastReportNanos < minIntervalNanos) {
+            return false;
+        }
+        lastPercent = percent;
+        lastReportNanos = nowNanos;
+        return true;
+    }
+}
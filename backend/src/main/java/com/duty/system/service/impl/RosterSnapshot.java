@@ -0,0 +1,210 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.Leave;
+import com.duty.system.entity.User;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次排班生成使用的人员名单快照，生成前从User实体构建一次，之后与持久化上下文无关
+ * 用户使用其在名单中的下标作为稠密索引，各属性保存在按下标索引的数组中；
+ * 各大组的组员和大组长预先按名单顺序整理成下标数组，每天只遍历对应大组的数组，不再扫描全部用户
+ * 构建后不再修改，可以在并行生成的多个线程之间共享
+ */
+public final class RosterSnapshot {
+
+    private static final int[] NO_LEAVE = new int[0];
+
+    final ZoneId zone;
+    final int userCount;
+    final Long[] userIds;
+    final String[] userNames;
+    final int[] groupIds;
+    final int[] subGroupIds;
+    // 每个用户的请假区间按天存储为[开始, 结束, 开始, 结束, ...]（闭区间），已按开始日排序并合并重叠和相邻的区间
+    final int[][] leaveDays;
+    final boolean hasPmGroup;
+
+    // 按大组ID索引的组员（不含大组长）和大组长下标，均按名单顺序；pm组不区分大组长，全部放在组员中
+    private final int[][] groupMembers;
+    private final int[][] groupLeaders;
+
+    private RosterSnapshot(List<User> users, Collection<Leave> leaves, ZoneId zone) {
+        this.zone = zone;
+        this.userCount = users.size();
+        this.userIds = new Long[userCount];
+        this.userNames = new String[userCount];
+        this.groupIds = new int[userCount];
+        this.subGroupIds = new int[userCount];
+        this.leaveDays = new int[userCount][];
+
+        int groupSlots = DutyPlanGenerator.GROUP_PM + 1;
+        int[] memberCounts = new int[groupSlots];
+        int[] leaderCounts = new int[groupSlots];
+        boolean[] leaders = new boolean[userCount];
+        Map<Long, List<Leave>> leavesByUser = new HashMap<>();
+        for (Leave leave : leaves) {
+            leavesByUser.computeIfAbsent(leave.getUserId(), id -> new ArrayList<>()).add(leave);
+        }
+        for (int u = 0; u < userCount; u++) {
+            User user = users.get(u);
+            userIds[u] = user.getId();
+            userNames[u] = user.getName();
+            groupIds[u] = user.getGroupId() != null ? user.getGroupId() : 0;
+            subGroupIds[u] = user.getSubGroupId() != null ? user.getSubGroupId() : 0;
+            leaders[u] = Boolean.TRUE.equals(user.getIsGroupLeader()) && groupIds[u] != DutyPlanGenerator.GROUP_PM;
+
+            // User上的请假时间和请假表中的多段请假合并在一起
+            List<Leave> userLeaves = leavesByUser.getOrDefault(user.getId(), Collections.emptyList());
+            int[] windows = new int[(userLeaves.size() + 1) * 2];
+            int size = 0;
+            if (user.getLeaveStartDate() != null && user.getLeaveEndDate() != null) {
+                windows[size++] = toEpochDay(user.getLeaveStartDate(), zone);
+                windows[size++] = toEpochDay(user.getLeaveEndDate(), zone);
+            }
+            for (Leave leave : userLeaves) {
+                windows[size++] = toEpochDay(leave.getStartDate(), zone);
+                windows[size++] = toEpochDay(leave.getEndDate(), zone);
+            }
+            leaveDays[u] = size == 0 ? NO_LEAVE : mergeLeaveDays(Arrays.copyOf(windows, size));
+            if (isKnownGroup(groupIds[u])) {
+                if (leaders[u]) {
+                    leaderCounts[groupIds[u]]++;
+                } else {
+                    memberCounts[groupIds[u]]++;
+                }
+            }
+        }
+        this.hasPmGroup = memberCounts[DutyPlanGenerator.GROUP_PM] > 0;
+
+        this.groupMembers = new int[groupSlots][];
+        this.groupLeaders = new int[groupSlots][];
+        for (int g = 0; g < groupSlots; g++) {
+            groupMembers[g] = new int[memberCounts[g]];
+            groupLeaders[g] = new int[leaderCounts[g]];
+        }
+        Arrays.fill(memberCounts, 0);
+        Arrays.fill(leaderCounts, 0);
+        for (int u = 0; u < userCount; u++) {
+            int g = groupIds[u];
+            if (!isKnownGroup(g)) {
+                continue;
+            }
+            if (leaders[u]) {
+                groupLeaders[g][leaderCounts[g]++] = u;
+            } else {
+                groupMembers[g][memberCounts[g]++] = u;
+            }
+        }
+    }
+
+    /**
+     * 按users的顺序构建快照，用户下标即其在users中的位置，请假只取User上的请假时间
+     */
+    public static RosterSnapshot of(List<User> users, ZoneId zone) {
+        return new RosterSnapshot(users, Collections.emptyList(), zone);
+    }
+
+    /**
+     * 同of(users, zone)，另外加入请假表中的请假，不属于users中任何用户的请假忽略
+     */
+    public static RosterSnapshot of(List<User> users, Collection<Leave> leaves, ZoneId zone) {
+        return new RosterSnapshot(users, leaves, zone);
+    }
+
+    public int size() {
+        return userCount;
+    }
+
+    /**
+     * 用户u在某天是否请假，在u的请假区间中二分查找；生成时使用按日期范围构建的LeaveCalendar，只有范围之外才走这里
+     */
+    boolean isOnLeave(int u, int day) {
+        int[] days = leaveDays[u];
+        // 找到最后一个开始日不晚于day的区间
+        int low = 0;
+        int high = days.length / 2 - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid * 2] <= day) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 && day <= days[found * 2 + 1];
+    }
+
+    /**
+     * 构建[fromDay, toDay]范围内的请假位图
+     */
+    LeaveCalendar leaveCalendar(int fromDay, int toDay) {
+        return new LeaveCalendar(this, fromDay, toDay);
+    }
+
+    /**
+     * 某个大组的组员（不含大组长）下标，调用方不能修改返回的数组
+     */
+    int[] members(int groupId) {
+        return groupMembers[groupId];
+    }
+
+    /**
+     * 某个大组的大组长下标，按名单顺序，每天取第一个可用的
+     */
+    int[] leaders(int groupId) {
+        return groupLeaders[groupId];
+    }
+
+    /**
+     * 把[开始, 结束, ...]形式的请假区间按开始日排序，丢弃结束早于开始的区间，并合并重叠和相邻的区间
+     */
+    static int[] mergeLeaveDays(int[] windows) {
+        int count = windows.length / 2;
+        long[] sorted = new long[count];
+        int valid = 0;
+        for (int i = 0; i < count; i++) {
+            int start = windows[i * 2];
+            int end = windows[i * 2 + 1];
+            if (end >= start) {
+                // 开始日放在高32位，按long排序即按开始日排序
+                sorted[valid++] = ((long) start << 32) | (end & 0xFFFFFFFFL);
+            }
+        }
+        if (valid == 0) {
+            return NO_LEAVE;
+        }
+        Arrays.sort(sorted, 0, valid);
+        int[] merged = new int[valid * 2];
+        int size = 0;
+        for (int i = 0; i < valid; i++) {
+            int start = (int) (sorted[i] >> 32);
+            int end = (int) sorted[i];
+            if (size > 0 && (long) start <= (long) merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], end);
+            } else {
+                merged[size++] = start;
+                merged[size++] = end;
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private static boolean isKnownGroup(int groupId) {
+        return groupId >= DutyPlanGenerator.GROUP_ONCALL_A && groupId <= DutyPlanGenerator.GROUP_PM;
+    }
+
+    private static int toEpochDay(Date date, ZoneId zone) {
+        return (int) date.toInstant().atZone(zone).toLocalDate().toEpochDay();
+    }
+}
@@ -0,0 +1,30 @@
+package com.duty.system.service.impl;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务提交后的回调：发布变更、清空缓存等对外可见的动作要等写入提交后再做，
+ * 否则并发的读请求可能在提交前读到旧数据，并把它缓存在新的版本号下
+ */
+final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * 当前线程在事务中时，把action推迟到事务提交后执行（回滚时不执行），否则立即执行
+     */
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
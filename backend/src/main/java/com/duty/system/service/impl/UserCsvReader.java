@@ -0,0 +1,180 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * 按表头解析用户CSV，列名与User的JSON字段一致，只有name和groupId是必需列
+ * 日期格式为yyyy-MM-dd（Asia/Shanghai），与User上的@JsonFormat一致
+ */
+class UserCsvReader {
+
+    static final String[] COLUMNS = {"id", "name", "groupId", "subGroupId", "isManager", "isGroupLeader",
+            "isSubGroupLeader", "status", "leaveStartDate", "leaveEndDate"};
+
+    private final List<User> users = new ArrayList<>();
+
+    // 与users一一对应，解析失败的行记录错误信息，其余为null
+    private final List<String> errors = new ArrayList<>();
+
+    // 表头中没有出现的列，更新已有用户时这些字段保留原值
+    private final Set<String> absentColumns = new HashSet<>();
+
+    private final SimpleDateFormat dateFormat;
+
+    UserCsvReader() {
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.ROOT);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
+        dateFormat.setLenient(false);
+    }
+
+    List<User> getUsers() {
+        return users;
+    }
+
+    List<String> getErrors() {
+        return errors;
+    }
+
+    Set<String> getAbsentColumns() {
+        return absentColumns;
+    }
+
+    /**
+     * 读取全部数据行，空行忽略，读取超过maxRows行时抛出IllegalArgumentException
+     */
+    void read(Reader source, int maxRows) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            return;
+        }
+        // 去掉Excel导出时带的BOM
+        if (headerLine.startsWith("\uFEFF")) {
+            headerLine = headerLine.substring(1);
+        }
+        Map<String, Integer> header = new HashMap<>();
+        List<String> names = split(headerLine);
+        for (int i = 0; i < names.size(); i++) {
+            header.put(names.get(i).trim(), i);
+        }
+        for (String column : COLUMNS) {
+            if (header.putIfAbsent(column, -1) == null) {
+                absentColumns.add(column);
+            }
+        }
+        if (header.get("name") < 0 || header.get("groupId") < 0) {
+            throw new IllegalArgumentException("CSV表头缺少name或groupId列");
+        }
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (users.size() >= maxRows) {
+                throw new IllegalArgumentException("导入行数超过上限" + maxRows);
+            }
+            List<String> values = split(line);
+            User user = new User();
+            String error = null;
+            try {
+                user.setId(parseLong(value(values, header, "id")));
+                user.setName(value(values, header, "name"));
+                user.setGroupId(parseInt(value(values, header, "groupId")));
+                user.setSubGroupId(parseInt(value(values, header, "subGroupId")));
+                user.setIsManager(parseBoolean(value(values, header, "isManager")));
+                user.setIsGroupLeader(parseBoolean(value(values, header, "isGroupLeader")));
+                user.setIsSubGroupLeader(parseBoolean(value(values, header, "isSubGroupLeader")));
+                Integer status = parseInt(value(values, header, "status"));
+                user.setStatus(status != null ? status : 1);
+                user.setLeaveStartDate(parseDate(value(values, header, "leaveStartDate")));
+                user.setLeaveEndDate(parseDate(value(values, header, "leaveEndDate")));
+            } catch (NumberFormatException | ParseException e) {
+                error = "格式错误: " + e.getMessage();
+            }
+            users.add(user);
+            errors.add(error);
+        }
+    }
+
+    private static String value(List<String> values, Map<String, Integer> header, String column) {
+        int index = header.get(column);
+        if (index < 0 || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Long parseLong(String value) {
+        return value != null ? Long.valueOf(value) : null;
+    }
+
+    private static Integer parseInt(String value) {
+        return value != null ? Integer.valueOf(value) : null;
+    }
+
+    // 支持true/false和1/0
+    private static Boolean parseBoolean(String value) {
+        if (value == null) {
+            return false;
+        }
+        if ("1".equals(value) || "true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("0".equals(value) || "false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new NumberFormatException("无法识别的布尔值 " + value);
+    }
+
+    private Date parseDate(String value) throws ParseException {
+        return value != null ? dateFormat.parse(value) : null;
+    }
+
+    // 按逗号拆分一行，支持双引号包裹的字段和""转义
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,102 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.WorkloadStat;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 一次排班写入对工作量汇总的增减，按(用户, 月份, 类型)合并后一次写入duty_workload
+ * 月份按生成排班时使用的时区计算
+ */
+class WorkloadDelta {
+
+    private final ZoneId zone;
+    private final Map<Key, int[]> counts = new HashMap<>();
+
+    WorkloadDelta(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    void add(Collection<DutyPlan> plans, int sign) {
+        for (DutyPlan plan : plans) {
+            add(plan.getUserId(), plan.getDate(), plan.getType(), 1, plan.getDutyGroupId() != null ? 1 : 0, sign);
+        }
+    }
+
+    // 累加countWorkloadBy*查询某个月的结果，每行为(userId, type, count, backfills)
+    void addCounted(List<Object[]> rows, int month, int sign) {
+        for (Object[] row : rows) {
+            add((Long) row[0], month, (Integer) row[1], ((Number) row[2]).intValue(),
+                    ((Number) row[3]).intValue(), sign);
+        }
+    }
+
+    private void add(Long userId, Date date, Integer type, int shifts, int backfills, int sign) {
+        add(userId, toMonth(date, zone), type, shifts, backfills, sign);
+    }
+
+    private void add(Long userId, int month, Integer type, int shifts, int backfills, int sign) {
+        int[] count = counts.computeIfAbsent(new Key(userId, month, type), k -> new int[2]);
+        count[0] += sign * shifts;
+        count[1] += sign * backfills;
+    }
+
+    boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    List<WorkloadStat> toStats() {
+        List<WorkloadStat> stats = new ArrayList<>(counts.size());
+        for (Map.Entry<Key, int[]> entry : counts.entrySet()) {
+            WorkloadStat stat = new WorkloadStat();
+            stat.setUserId(entry.getKey().userId);
+            stat.setMonth(entry.getKey().month);
+            stat.setType(entry.getKey().type);
+            stat.setShifts(entry.getValue()[0]);
+            stat.setBackfills(entry.getValue()[1]);
+            stats.add(stat);
+        }
+        return stats;
+    }
+
+    // yyyyMM
+    static int toMonth(Date date, ZoneId zone) {
+        ZonedDateTime dateTime = date.toInstant().atZone(zone);
+        return dateTime.getYear() * 100 + dateTime.getMonthValue();
+    }
+
+    private static final class Key {
+        private final Long userId;
+        private final int month;
+        private final Integer type;
+
+        Key(Long userId, int month, Integer type) {
+            this.userId = userId;
+            this.month = month;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return month == other.month && Objects.equals(userId, other.userId) && Objects.equals(type, other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hashCode(userId) * 31 + month) * 31 + Objects.hashCode(type);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+-- duty_plan的组合索引，与DutyPlan上的@Table(indexes)一致
+-- (date, type, status)：按日期范围查询排班、按类型查24小时班；单独的(date)索引是它的最左前缀，不再重复建
+-- (user_id, date)：按人员查询某段时间的排班
+-- 空库第一次启动时表还不存在，由Hibernate建表时一并创建索引；已由ddl-auto=update建过的索引跳过
+-- 使用ALGORITHM=INPLACE, LOCK=NONE在线建索引，建索引期间不阻塞排班的读写
+
+SET @duty_plan_exists = (SELECT COUNT(*) FROM information_schema.tables
+    WHERE table_schema = DATABASE() AND table_name = 'duty_plan');
+
+SET @index_exists = (SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'duty_plan' AND index_name = 'idx_duty_plan_date_type_status');
+SET @ddl = IF(@duty_plan_exists > 0 AND @index_exists = 0,
+    'ALTER TABLE duty_plan ADD INDEX idx_duty_plan_date_type_status (date, type, status), ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @index_exists = (SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'duty_plan' AND index_name = 'idx_duty_plan_user_date');
+SET @ddl = IF(@duty_plan_exists > 0 AND @index_exists = 0,
+    'ALTER TABLE duty_plan ADD INDEX idx_duty_plan_user_date (user_id, date), ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
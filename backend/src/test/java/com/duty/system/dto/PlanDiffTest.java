@@ -0,0 +1,64 @@
+package com.duty.system.dto;
+
+import com.duty.system.entity.DutyPlan;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanDiffTest {
+
+    private static final Date DAY = new Date(1735689600000L);
+
+    @Test
+    void sameAssignmentIsUnchanged() {
+        PlanDiff diff = new PlanDiff();
+        diff.compare(Collections.singletonList(plan(1L, 10L, 1L, 1)), Collections.singletonList(plan(null, 10L, 1L, 1)));
+
+        assertTrue(diff.isEmpty());
+        assertEquals(1, diff.getUnchanged());
+    }
+
+    @Test
+    void differentTimeSlotIsUpdate() {
+        PlanDiff diff = new PlanDiff();
+        diff.compare(Collections.singletonList(plan(1L, 10L, 1L, 1)), Collections.singletonList(plan(null, 10L, 2L, 1)));
+
+        assertEquals(1, diff.getUpdates().size());
+        assertEquals(1L, diff.getUpdates().get(0).getId());
+    }
+
+    @Test
+    void missingTimeSlotInPreviewMatchesAnySlot() {
+        PlanDiff diff = new PlanDiff();
+        diff.compare(Arrays.asList(plan(1L, 10L, 1L, 1), plan(2L, 11L, 3L, 3)),
+                Arrays.asList(plan(null, 10L, null, 1), plan(null, 11L, null, 3)));
+
+        assertTrue(diff.isEmpty());
+        assertEquals(2, diff.getUnchanged());
+    }
+
+    @Test
+    void missingTimeSlotStillDetectsReassignment() {
+        PlanDiff diff = new PlanDiff();
+        diff.compare(Collections.singletonList(plan(1L, 10L, 1L, 1)), Collections.singletonList(plan(null, 12L, null, 1)));
+
+        assertEquals(1, diff.getInserts().size());
+        assertEquals(1, diff.getDeletes().size());
+    }
+
+    private static DutyPlan plan(Long id, Long userId, Long timeSlotId, int type) {
+        DutyPlan plan = new DutyPlan();
+        plan.setId(id);
+        plan.setUserId(userId);
+        plan.setDate(DAY);
+        plan.setTimeSlotId(timeSlotId);
+        plan.setType(type);
+        plan.setStatus(1);
+        return plan;
+    }
+}
@@ -0,0 +1,157 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.entity.ChangeLog;
+import com.duty.system.repository.ChangeLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DatabaseChangeBusTest {
+
+    // 模拟duty_change_log表，测试直接插入其他节点的行，可以制造序号空洞
+    private final TreeMap<Long, ChangeLog> table = new TreeMap<>();
+    private final List<Long> received = new ArrayList<>();
+    private DatabaseChangeBus bus;
+
+    @BeforeEach
+    void setUp() {
+        ChangeLogRepository repository = mock(ChangeLogRepository.class);
+        when(repository.findTop500ByIdGreaterThanOrderByIdAsc(anyLong()))
+                .thenAnswer(call -> new ArrayList<>(table.tailMap(call.getArgument(0), false).values()));
+        when(repository.findAllById(any()))
+                .thenAnswer(call -> {
+                    List<ChangeLog> found = new ArrayList<>();
+                    for (Long id : call.<Iterable<Long>>getArgument(0)) {
+                        if (table.containsKey(id)) {
+                            found.add(table.get(id));
+                        }
+                    }
+                    return found;
+                });
+        when(repository.findTopByOrderByIdDesc())
+                .thenAnswer(call -> table.isEmpty() ? null : table.lastEntry().getValue());
+        when(repository.findLatestPerResource())
+                .thenAnswer(call -> table.isEmpty() ? Collections.emptyList()
+                        : Collections.singletonList(table.lastEntry().getValue()));
+        when(repository.save(any(ChangeLog.class))).thenAnswer(call -> {
+            ChangeLog change = call.getArgument(0);
+            change.setId(table.isEmpty() ? 1L : table.lastKey() + 1);
+            table.put(change.getId(), change);
+            return change;
+        });
+
+        DutyProperties.Cluster properties = new DutyProperties.Cluster();
+        properties.setPollIntervalMillis(3_600_000L);
+        properties.setGapTimeoutMillis(200L);
+        properties.setGapRecheckMillis(500L);
+        table.put(1L, row(1L));
+        bus = new DatabaseChangeBus(repository, properties, "me");
+        bus.start();
+        bus.subscribe(change -> received.add(change.getId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.stop();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void subscribeReplaysExistingChanges() {
+        assertEquals(Collections.singletonList(1L), received);
+    }
+
+    @Test
+    void lateCommittedChangeIsDeliveredOnce() {
+        received.clear();
+        table.put(3L, row(3L));
+        bus.poll();
+        table.put(2L, row(2L));
+        bus.poll();
+        bus.poll();
+
+        assertEquals(Arrays.asList(3L, 2L), received);
+    }
+
+    @Test
+    void ownChangeIsNotDeliveredAgainByPoll() {
+        received.clear();
+        bus.publish(ResourceVersion.Resource.PLANS);
+        bus.poll();
+
+        assertEquals(Collections.singletonList(2L), received);
+    }
+
+    @Test
+    void skippedChangeCommittedLateIsDeliveredAndRepublished() throws InterruptedException {
+        received.clear();
+        table.put(4L, row(4L));
+        bus.poll();
+        Thread.sleep(300L);
+        bus.poll();
+        // 2、3超时后跳过，2在重新读取的时间内出现，投递后再发布一条序号更大的变更6
+        table.put(2L, row(2L));
+        table.put(5L, row(5L));
+        bus.poll();
+        bus.poll();
+
+        assertEquals(Arrays.asList(4L, 5L, 2L, 6L), received);
+        assertEquals("me", table.get(6L).getNodeId());
+    }
+
+    @Test
+    void skippedChangeIsNotReadAfterRecheckTime() throws InterruptedException {
+        received.clear();
+        table.put(4L, row(4L));
+        bus.poll();
+        Thread.sleep(300L);
+        bus.poll();
+        Thread.sleep(600L);
+        bus.poll();
+        table.put(2L, row(2L));
+        bus.poll();
+
+        assertEquals(Collections.singletonList(4L), received);
+    }
+
+    @Test
+    void changeInTransactionIsDeliveredAfterCommit() {
+        received.clear();
+        TransactionSynchronizationManager.initSynchronization();
+        bus.publish(ResourceVersion.Resource.USERS);
+        assertTrue(received.isEmpty());
+
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        assertEquals(Collections.singletonList(2L), received);
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(table.keySet()));
+    }
+
+    private static ChangeLog row(long id) {
+        ChangeLog change = new ChangeLog();
+        change.setId(id);
+        change.setResource(ResourceVersion.Resource.USERS);
+        change.setNodeId("other");
+        change.setChangedAt(new Date());
+        return change;
+    }
+}
@@ -0,0 +1,105 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.Leave;
+import com.duty.system.entity.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.duty.system.service.impl.GeneratorFixtures.assertSamePlans;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按9天周期分段并行生成的结果与顺序生成逐条一致
+ */
+class DutyPlanGeneratorParallelTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void matchesSequentialOnRandomRostersAndRanges() {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            // 起始日和天数都随机，大多数范围不是9天的整数倍
+            LocalDate start = LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365));
+            LocalDate end = start.plusDays(random.nextInt(400));
+            int segmentCycles = 1 + random.nextInt(4);
+            List<User> users = GeneratorFixtures.randomUsers(random, ZONE, start, end);
+            List<Leave> leaves = GeneratorFixtures.randomLeaves(random, users, ZONE, start, end);
+            addBoundaryLeaves(random, users, leaves, start, end, segmentCycles);
+
+            assertParallelMatches(users, leaves, start, end, segmentCycles,
+                    "seed " + seed + " " + start + "~" + end + " 每段" + segmentCycles + "个周期");
+        }
+    }
+
+    @Test
+    void matchesSequentialOnShortAndAlignedRanges() {
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2025, 3, 1);
+        List<User> users = GeneratorFixtures.randomUsers(random, ZONE, start, start.plusDays(100));
+        List<Leave> leaves = GeneratorFixtures.randomLeaves(random, users, ZONE, start, start.plusDays(100));
+        // 单天、不足一段、正好一段、正好多段、多段多一天
+        int[] lengths = {1, 5, 9, 18, 36, 37, 100};
+        for (int length : lengths) {
+            LocalDate end = start.plusDays(length - 1);
+            assertParallelMatches(users, leaves, start, end, 1, length + "天");
+            assertParallelMatches(users, leaves, start, end, 2, length + "天");
+        }
+        assertTrue(GeneratorFixtures.generator(users, leaves, ZONE)
+                .generateParallel(start, start.minusDays(1), 1, pool, null).isEmpty());
+    }
+
+    private void assertParallelMatches(List<User> users, List<Leave> leaves, LocalDate start, LocalDate end,
+                                       int segmentCycles, String context) {
+        DutyPlanGenerator generator = GeneratorFixtures.generator(users, leaves, ZONE);
+        List<DutyPlan> sequential = generator.generate(start, end);
+        AtomicInteger callbacks = new AtomicInteger();
+        AtomicInteger maxDaysDone = new AtomicInteger();
+        List<DutyPlan> parallel = generator.generateParallel(start, end, segmentCycles, pool, daysDone -> {
+            callbacks.incrementAndGet();
+            maxDaysDone.accumulateAndGet(daysDone, Math::max);
+        });
+        assertSamePlans(sequential, parallel, context);
+
+        // 进度回调每天一次，最后一次为总天数
+        int days = (int) (end.toEpochDay() - start.toEpochDay()) + 1;
+        assertEquals(days, callbacks.get(), context);
+        assertEquals(days, maxDaysDone.get(), context);
+    }
+
+    // 在分段边界前后给一些人加上请假，让请假跨越相邻的两个分段
+    private void addBoundaryLeaves(Random random, List<User> users, List<Leave> leaves, LocalDate start,
+                                   LocalDate end, int segmentCycles) {
+        int segmentDays = segmentCycles * DutyPlanGenerator.ONCALL_CYCLE_DAYS;
+        for (LocalDate boundary = start.plusDays(segmentDays); !boundary.isAfter(end);
+             boundary = boundary.plusDays(segmentDays)) {
+            for (int i = 0; i < 2; i++) {
+                User user = users.get(random.nextInt(users.size()));
+                leaves.add(GeneratorFixtures.leave(user.getId(), boundary.minusDays(1 + random.nextInt(3)),
+                        boundary.plusDays(random.nextInt(3)), ZONE));
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static com.duty.system.service.impl.GeneratorFixtures.DAY_SHIFT_ID;
+import static com.duty.system.service.impl.GeneratorFixtures.SHIFT_24H_ID;
+import static com.duty.system.service.impl.GeneratorFixtures.assertSamePlans;
+import static com.duty.system.service.impl.GeneratorFixtures.date;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 按天计算的排班引擎与原Calendar实现逐条一致，并且在有夏令时的时区下按日期计算周期
+ */
+class DutyPlanGeneratorTest {
+
+    private static final ZoneId SHANGHAI = ZoneId.of("Asia/Shanghai");
+
+    @Test
+    void matchesLegacyImplementationOnRandomRosters() {
+        LegacyDutyPlanGenerator legacy = new LegacyDutyPlanGenerator(TimeZone.getTimeZone(SHANGHAI),
+                DAY_SHIFT_ID, SHIFT_24H_ID);
+        for (int seed = 0; seed < 300; seed++) {
+            Random random = new Random(seed);
+            LocalDate start = LocalDate.of(2025, 1, 1).plusDays(random.nextInt(400));
+            LocalDate end = start.plusDays(random.nextInt(60));
+            List<User> users = GeneratorFixtures.randomUsers(random, SHANGHAI, start, end);
+
+            List<DutyPlan> expected = legacy.generate(users, date(start, SHANGHAI), date(end, SHANGHAI));
+            List<DutyPlan> actual = GeneratorFixtures.generator(users, Collections.emptyList(), SHANGHAI)
+                    .generate(start, end);
+            assertSamePlans(expected, actual, "seed " + seed + " " + start + "~" + end);
+        }
+    }
+
+    @Test
+    void rotationFollowsCalendarDaysAcrossDaylightSaving() {
+        // 3月和11月各有一次夏令时切换，那两天只有23或25小时
+        ZoneId newYork = ZoneId.of("America/New_York");
+        LocalDate start = LocalDate.of(2025, 2, 20);
+        LocalDate end = LocalDate.of(2025, 11, 20);
+        for (int seed = 0; seed < 20; seed++) {
+            List<User> users = GeneratorFixtures.randomUsers(new Random(seed), newYork, start, end);
+            // 同样的请假日期换到没有夏令时的时区
+            List<User> shanghaiUsers = new ArrayList<>();
+            for (User user : users) {
+                User copy = new User();
+                copy.setId(user.getId());
+                copy.setName(user.getName());
+                copy.setGroupId(user.getGroupId());
+                copy.setSubGroupId(user.getSubGroupId());
+                copy.setIsGroupLeader(user.getIsGroupLeader());
+                if (user.getLeaveStartDate() != null) {
+                    copy.setLeaveStartDate(date(localDate(user.getLeaveStartDate().toInstant(), newYork), SHANGHAI));
+                    copy.setLeaveEndDate(date(localDate(user.getLeaveEndDate().toInstant(), newYork), SHANGHAI));
+                }
+                shanghaiUsers.add(copy);
+            }
+
+            List<DutyPlan> local = GeneratorFixtures.generator(users, Collections.emptyList(), newYork)
+                    .generate(start, end);
+            List<DutyPlan> reference = GeneratorFixtures.generator(shanghaiUsers, Collections.emptyList(), SHANGHAI)
+                    .generate(start, end);
+            assertEquals(reference.size(), local.size(), "seed " + seed);
+            for (int i = 0; i < local.size(); i++) {
+                DutyPlan plan = local.get(i);
+                DutyPlan expected = reference.get(i);
+                // 每条排班都落在当地零点，换算成日期后与没有夏令时的结果一致
+                assertEquals(date(localDate(plan.getDate().toInstant(), newYork), newYork), plan.getDate());
+                assertEquals(localDate(expected.getDate().toInstant(), SHANGHAI),
+                        localDate(plan.getDate().toInstant(), newYork), "seed " + seed + " 第" + i + "条");
+                expected.setDate(plan.getDate());
+                assertEquals(expected, plan, "seed " + seed + " 第" + i + "条");
+            }
+        }
+    }
+
+    private static LocalDate localDate(Instant instant, ZoneId zone) {
+        return instant.atZone(zone).toLocalDate();
+    }
+}
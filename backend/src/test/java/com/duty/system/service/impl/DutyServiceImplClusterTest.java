@@ -0,0 +1,78 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.config.CacheConfig;
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.entity.Config;
+import com.duty.system.repository.ConfigRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 两个节点共享一个内存变更通道：一个节点写入后，另一个节点的版本号跟着变化并清空本地缓存
+ */
+class DutyServiceImplClusterTest {
+
+    private DutyServiceImpl nodeA;
+    private DutyServiceImpl nodeB;
+    private CacheManager cachesA;
+    private CacheManager cachesB;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryChangeBus busA = new InMemoryChangeBus("a");
+        InMemoryChangeBus busB = busA.join("b");
+        ConfigRepository configRepository = mock(ConfigRepository.class);
+        when(configRepository.save(any(Config.class))).thenAnswer(call -> call.getArgument(0));
+        cachesA = new ConcurrentMapCacheManager(CacheConfig.USERS, CacheConfig.TIME_SLOTS, CacheConfig.CONFIGS);
+        cachesB = new ConcurrentMapCacheManager(CacheConfig.USERS, CacheConfig.TIME_SLOTS, CacheConfig.CONFIGS);
+        nodeA = node(busA, configRepository, cachesA);
+        nodeB = node(busB, configRepository, cachesB);
+    }
+
+    @Test
+    void writeOnOneNodeChangesEtagOnBoth() {
+        ResourceVersion before = nodeB.getResourceVersion(ResourceVersion.Resource.CONFIGS);
+
+        nodeA.saveConfig(new Config());
+
+        ResourceVersion onA = nodeA.getResourceVersion(ResourceVersion.Resource.CONFIGS);
+        ResourceVersion onB = nodeB.getResourceVersion(ResourceVersion.Resource.CONFIGS);
+        assertNotEquals(before.getEtag(), onB.getEtag());
+        assertEquals(onA.getEtag(), onB.getEtag());
+        assertEquals(onA.getLastModified(), onB.getLastModified());
+    }
+
+    @Test
+    void writeOnOtherNodeClearsLocalCache() {
+        cachesA.getCache(CacheConfig.CONFIGS).put("all", "a");
+        cachesB.getCache(CacheConfig.CONFIGS).put("all", "b");
+        cachesB.getCache(CacheConfig.USERS).put("all", "b");
+
+        nodeA.saveConfig(new Config());
+
+        // 本节点的缓存由仓库上的@CacheEvict负责，这里不动
+        assertNotNull(cachesA.getCache(CacheConfig.CONFIGS).get("all"));
+        assertNull(cachesB.getCache(CacheConfig.CONFIGS).get("all"));
+        assertNotNull(cachesB.getCache(CacheConfig.USERS).get("all"));
+    }
+
+    private static DutyServiceImpl node(InMemoryChangeBus bus, ConfigRepository configRepository, CacheManager caches) {
+        DutyServiceImpl service = new DutyServiceImpl();
+        ReflectionTestUtils.setField(service, "changeBus", bus);
+        ReflectionTestUtils.setField(service, "configRepository", configRepository);
+        ReflectionTestUtils.setField(service, "cacheManager", caches);
+        service.subscribeChanges();
+        return service;
+    }
+}
@@ -0,0 +1,234 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.dto.PlanDiff;
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.GenerationRun;
+import com.duty.system.entity.Leave;
+import com.duty.system.entity.TimeSlot;
+import com.duty.system.entity.User;
+import com.duty.system.repository.DutyPlanRepository;
+import com.duty.system.repository.GenerationRunRepository;
+import com.duty.system.repository.LeaveRepository;
+import com.duty.system.repository.TimeSlotRepository;
+import com.duty.system.repository.UserRepository;
+import com.duty.system.repository.WorkloadStatRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.duty.system.service.impl.GeneratorFixtures.date;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 请假变化后增量修复的结果与用新名单重新生成整个范围一致，并且只改动少量排班
+ */
+class DutyServiceImplRepairTest {
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private DutyServiceImpl service;
+
+    // 内存中的duty_plan表，按id存放
+    private final Map<Long, DutyPlan> table = new TreeMap<>();
+    private long nextId;
+    private List<User> users;
+    private List<Leave> leaves;
+    private List<GenerationRun> runs;
+
+    @BeforeEach
+    void setUp() {
+        service = new DutyServiceImpl();
+        ReflectionTestUtils.setField(service, "dutyProperties", new DutyProperties());
+        ReflectionTestUtils.setField(service, "changeBus", new InMemoryChangeBus("a"));
+        ReflectionTestUtils.setField(service, "workloadStatRepository", mock(WorkloadStatRepository.class));
+
+        PlanRangeLock planRangeLock = mock(PlanRangeLock.class);
+        when(planRangeLock.withLock(any(), any(), any())).thenAnswer(call -> call.<Supplier<?>>getArgument(2).get());
+        ReflectionTestUtils.setField(service, "planRangeLock", planRangeLock);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(call -> call.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+
+        TimeSlotRepository timeSlotRepository = mock(TimeSlotRepository.class);
+        when(timeSlotRepository.findByStatus(1)).thenReturn(Arrays.asList(
+                timeSlot(GeneratorFixtures.DAY_SHIFT_ID, DutyPlanGenerator.TYPE_DAY),
+                timeSlot(GeneratorFixtures.SHIFT_24H_ID, DutyPlanGenerator.TYPE_24H)));
+        ReflectionTestUtils.setField(service, "timeSlotRepository", timeSlotRepository);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findAll()).thenAnswer(call -> users);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        LeaveRepository leaveRepository = mock(LeaveRepository.class);
+        when(leaveRepository.findOverlapping(any(), any())).thenAnswer(call -> leaves.stream()
+                .filter(l -> !l.getEndDate().before(call.getArgument(0)) && !l.getStartDate().after(call.getArgument(1)))
+                .collect(Collectors.toList()));
+        ReflectionTestUtils.setField(service, "leaveRepository", leaveRepository);
+        GenerationRunRepository generationRunRepository = mock(GenerationRunRepository.class);
+        when(generationRunRepository.findAllByOrderByIdAsc()).thenAnswer(call -> runs);
+        ReflectionTestUtils.setField(service, "generationRunRepository", generationRunRepository);
+
+        DutyPlanRepository dutyPlanRepository = mock(DutyPlanRepository.class);
+        when(dutyPlanRepository.findByDateRange(any(), any())).thenAnswer(call -> find(plan ->
+                !plan.getDate().before(call.getArgument(0)) && plan.getDate().before(call.getArgument(1))));
+        when(dutyPlanRepository.findByTypeAndDateGreaterThanEqualAndDateLessThan(anyInt(), any(), any()))
+                .thenAnswer(call -> find(plan -> plan.getType().equals(call.getArgument(0))
+                        && !plan.getDate().before(call.getArgument(1)) && plan.getDate().before(call.getArgument(2))));
+        doAnswer(call -> {
+            call.<Collection<Long>>getArgument(0).forEach(table::remove);
+            return null;
+        }).when(dutyPlanRepository).deleteAllByIdInBatch(any());
+        when(dutyPlanRepository.saveAll(any())).thenAnswer(call -> {
+            for (DutyPlan plan : call.<Iterable<DutyPlan>>getArgument(0)) {
+                assertTrue(table.containsKey(plan.getId()), "更新的排班不存在");
+                table.put(plan.getId(), plan);
+            }
+            return call.getArgument(0);
+        });
+        when(dutyPlanRepository.batchInsert(any())).thenAnswer(call -> insert(call.getArgument(0)));
+        ReflectionTestUtils.setField(service, "dutyPlanRepository", dutyPlanRepository);
+
+        service.subscribeChanges();
+    }
+
+    @Test
+    void repairMatchesFullRegeneration() {
+        int storedRows = 0;
+        int touchedRows = 0;
+        for (int seed = 0; seed < 300; seed++) {
+            Random random = new Random(seed);
+            LocalDate start = LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365));
+            LocalDate end = start.plusDays(30 + random.nextInt(150));
+            users = GeneratorFixtures.randomUsers(random, zone, start, end);
+            leaves = GeneratorFixtures.randomLeaves(random, users, zone, start, end);
+
+            // 一次或两次生成，第二次从范围中间开始重新生成到结束日
+            runs = new ArrayList<>();
+            runs.add(run(1L, start, end));
+            LocalDate secondStart = random.nextBoolean() ? start.plusDays(1 + random.nextInt(30)) : null;
+            if (secondStart != null) {
+                runs.add(run(2L, secondStart, end));
+            }
+            table.clear();
+            insert(generateRuns(start, secondStart, end));
+            storedRows += table.size();
+
+            // 改动一个人的请假：改User上的请假时间，或在请假表中新增/删除一段
+            LocalDate[] changed = changeOneLeave(random, start, end);
+            PlanDiff diff = service.repairDutyPlans(date(changed[0], zone), date(changed[1], zone));
+            touchedRows += diff.getInserts().size() + diff.getUpdates().size() + diff.getDeletes().size();
+
+            String context = "seed " + seed + " 修复" + changed[0] + "~" + changed[1];
+            assertEquals(keys(generateRuns(start, secondStart, end)), keys(new ArrayList<>(table.values())), context);
+        }
+        // 只写入差异，远少于整个范围的排班
+        assertTrue(touchedRows * 20 < storedRows, "修复改动了 " + touchedRows + " 条，共 " + storedRows + " 条");
+    }
+
+    // 按生成记录用当前名单生成整个范围，第二次生成覆盖第一次生成的后半段
+    private List<DutyPlan> generateRuns(LocalDate start, LocalDate secondStart, LocalDate end) {
+        DutyPlanGenerator generator = GeneratorFixtures.generator(users, leaves, zone);
+        if (secondStart == null) {
+            return generator.generate(start, end);
+        }
+        List<DutyPlan> plans = generator.generate(start, secondStart.minusDays(1));
+        plans.addAll(generator.generate(secondStart, end));
+        return plans;
+    }
+
+    /**
+     * 随机改动一个人的请假，返回修改前后请假日期的并集范围
+     */
+    private LocalDate[] changeOneLeave(Random random, LocalDate start, LocalDate end) {
+        User user = users.get(random.nextInt(users.size()));
+        LocalDate newStart = start.plusDays(random.nextInt((int) (end.toEpochDay() - start.toEpochDay()) + 1));
+        LocalDate newEnd = newStart.plusDays(random.nextInt(10));
+        List<LocalDate> dates = new ArrayList<>(Arrays.asList(newStart, newEnd));
+        List<Leave> userLeaves = leaves.stream().filter(l -> l.getUserId().equals(user.getId())).collect(Collectors.toList());
+        int kind = random.nextInt(3);
+        if (kind == 0) {
+            if (user.getLeaveStartDate() != null) {
+                dates.add(localDate(user.getLeaveStartDate()));
+                dates.add(localDate(user.getLeaveEndDate()));
+            }
+            user.setLeaveStartDate(date(newStart, zone));
+            user.setLeaveEndDate(date(newEnd, zone));
+        } else if (kind == 1 || userLeaves.isEmpty()) {
+            leaves.add(GeneratorFixtures.leave(user.getId(), newStart, newEnd, zone));
+        } else {
+            Leave removed = userLeaves.get(random.nextInt(userLeaves.size()));
+            leaves.remove(removed);
+            dates.set(0, localDate(removed.getStartDate()));
+            dates.set(1, localDate(removed.getEndDate()));
+        }
+        dates.sort(null);
+        return new LocalDate[]{dates.get(0), dates.get(dates.size() - 1)};
+    }
+
+    private List<Long> insert(List<DutyPlan> plans) {
+        List<Long> ids = new ArrayList<>();
+        for (DutyPlan plan : plans) {
+            plan.setId(++nextId);
+            table.put(plan.getId(), plan);
+            ids.add(plan.getId());
+        }
+        return ids;
+    }
+
+    private List<DutyPlan> find(Predicate<DutyPlan> filter) {
+        return table.values().stream().filter(filter)
+                .sorted((a, b) -> a.getDate().compareTo(b.getDate()))
+                .collect(Collectors.toList());
+    }
+
+    // 不含id的排班内容，排序后比较
+    private static List<String> keys(List<DutyPlan> plans) {
+        return plans.stream()
+                .map(p -> p.getDate().getTime() + "/" + p.getUserId() + "/" + p.getType() + "/" + p.getTimeSlotId()
+                        + "/" + p.getAssignedSubGroupId() + "/" + p.getStatus() + "/" + p.getDutyGroupId()
+                        + "/" + p.getDutySubGroupId())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private GenerationRun run(Long id, LocalDate start, LocalDate end) {
+        GenerationRun run = new GenerationRun();
+        run.setId(id);
+        run.setStartDate(date(start, zone));
+        run.setEndDate(date(end, zone));
+        run.setCreatedAt(new Date());
+        return run;
+    }
+
+    private static TimeSlot timeSlot(Long id, int type) {
+        TimeSlot timeSlot = new TimeSlot();
+        timeSlot.setId(id);
+        timeSlot.setType(type);
+        timeSlot.setStatus(1);
+        return timeSlot;
+    }
+
+    private LocalDate localDate(Date date) {
+        return date.toInstant().atZone(zone).toLocalDate();
+    }
+}
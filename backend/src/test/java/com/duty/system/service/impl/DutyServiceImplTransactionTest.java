@@ -0,0 +1,97 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.config.CacheConfig;
+import com.duty.system.config.DutyProperties;
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.entity.User;
+import com.duty.system.repository.LeaveRepository;
+import com.duty.system.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 事务中的写入：用户缓存的清空和版本号的变化都要等到提交之后
+ */
+class DutyServiceImplTransactionTest {
+
+    private DutyServiceImpl service;
+    private UserRepository userRepository;
+    private CacheManager caches;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAll()).thenReturn(Collections.emptyList());
+        caches = new ConcurrentMapCacheManager(CacheConfig.USERS, CacheConfig.TIME_SLOTS, CacheConfig.CONFIGS);
+        service = new DutyServiceImpl();
+        ReflectionTestUtils.setField(service, "changeBus", new InMemoryChangeBus("a"));
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "leaveRepository", mock(LeaveRepository.class));
+        ReflectionTestUtils.setField(service, "cacheManager", caches);
+        ReflectionTestUtils.setField(service, "dutyProperties", new DutyProperties());
+        service.subscribeChanges();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void importUsersClearsCacheAndBumpsRevisionAfterCommit() {
+        String before = etag();
+        caches.getCache(CacheConfig.USERS).put("all", "stale");
+
+        User user = new User();
+        user.setName("U1");
+        user.setGroupId(1);
+        service.importUsers(Collections.singletonList(user), false);
+
+        assertNotNull(caches.getCache(CacheConfig.USERS).get("all"));
+        assertEquals(before, etag());
+
+        commit();
+        assertNull(caches.getCache(CacheConfig.USERS).get("all"));
+        assertNotEquals(before, etag());
+    }
+
+    @Test
+    void deleteUserClearsCacheAndBumpsRevisionsAfterCommit() {
+        String before = etag();
+        String leavesBefore = service.getResourceVersion(ResourceVersion.Resource.LEAVES).getEtag();
+
+        service.deleteUser(1L);
+        // 提交前有并发读取把旧的用户列表放回了缓存
+        caches.getCache(CacheConfig.USERS).put("all", "stale");
+        assertEquals(before, etag());
+
+        commit();
+        assertNull(caches.getCache(CacheConfig.USERS).get("all"));
+        assertNotEquals(before, etag());
+        assertNotEquals(leavesBefore, service.getResourceVersion(ResourceVersion.Resource.LEAVES).getEtag());
+    }
+
+    private String etag() {
+        return service.getResourceVersion(ResourceVersion.Resource.USERS).getEtag();
+    }
+
+    private static void commit() {
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+    }
+}
@@ -0,0 +1,108 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.config.DutyProperties;
+import com.duty.system.entity.WorkloadStat;
+import com.duty.system.repository.DutyPlanRepository;
+import com.duty.system.repository.WorkloadStatRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 删除排班时按自然月分组统计工作量，每个月由数据库按(用户, 类型)汇总
+ */
+class DutyServiceImplWorkloadTest {
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private DutyServiceImpl service;
+    private DutyPlanRepository dutyPlanRepository;
+    private WorkloadStatRepository workloadStatRepository;
+    private PlanRangeLock planRangeLock;
+
+    @BeforeEach
+    void setUp() {
+        dutyPlanRepository = mock(DutyPlanRepository.class);
+        workloadStatRepository = mock(WorkloadStatRepository.class);
+        service = new DutyServiceImpl();
+        ReflectionTestUtils.setField(service, "dutyPlanRepository", dutyPlanRepository);
+        ReflectionTestUtils.setField(service, "workloadStatRepository", workloadStatRepository);
+        ReflectionTestUtils.setField(service, "dutyProperties", new DutyProperties());
+        ReflectionTestUtils.setField(service, "changeBus", new InMemoryChangeBus("a"));
+        planRangeLock = mock(PlanRangeLock.class);
+        when(planRangeLock.withLock(any(), any(), any())).thenAnswer(call -> call.<Supplier<?>>getArgument(2).get());
+        ReflectionTestUtils.setField(service, "planRangeLock", planRangeLock);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(call -> call.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+    }
+
+    @Test
+    void deleteByIdsCountsEachMonthSeparately() {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        when(dutyPlanRepository.findDateBoundsByIds(ids))
+                .thenReturn(Collections.singletonList(new Object[]{date(2025, 1, 30), date(2025, 2, 2)}));
+        when(dutyPlanRepository.countWorkloadByIds(anyCollection(), eq(date(2025, 1, 30)), eq(date(2025, 2, 1))))
+                .thenReturn(Collections.singletonList(new Object[]{10L, 1, 2L, 1L}));
+        when(dutyPlanRepository.countWorkloadByIds(anyCollection(), eq(date(2025, 2, 1)), eq(date(2025, 2, 3))))
+                .thenReturn(Collections.singletonList(new Object[]{10L, 1, 1L, 0L}));
+
+        service.deleteDutyPlansByIds(ids);
+
+        verify(planRangeLock).withLock(eq(LocalDate.of(2025, 1, 30)), eq(LocalDate.of(2025, 2, 2)), any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<WorkloadStat>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(workloadStatRepository).addCounts(captor.capture());
+        Collection<WorkloadStat> stats = captor.getValue();
+        assertEquals(2, stats.size());
+        for (WorkloadStat stat : stats) {
+            assertEquals(10L, stat.getUserId());
+            if (stat.getMonth() == 202501) {
+                assertEquals(-2, stat.getShifts());
+                assertEquals(-1, stat.getBackfills());
+            } else {
+                assertEquals(202502, stat.getMonth());
+                assertEquals(-1, stat.getShifts());
+                assertEquals(0, stat.getBackfills());
+            }
+        }
+    }
+
+    @Test
+    void deleteUnknownIdsChangesNothing() {
+        when(dutyPlanRepository.findDateBoundsByIds(any()))
+                .thenReturn(Collections.singletonList(new Object[]{null, null}));
+
+        service.deleteDutyPlansByIds(Collections.singletonList(99L));
+
+        verify(planRangeLock, never()).withLock(any(), any(), any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<WorkloadStat>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(workloadStatRepository).addCounts(captor.capture());
+        assertEquals(0, captor.getValue().size());
+    }
+
+    private Date date(int year, int month, int day) {
+        return Date.from(LocalDate.of(year, month, day).atStartOfDay(zone).toInstant());
+    }
+}
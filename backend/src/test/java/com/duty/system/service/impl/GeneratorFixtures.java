@@ -0,0 +1,117 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.Leave;
+import com.duty.system.entity.User;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 排班引擎测试用的随机名单和比较方法，同一个种子总是生成同样的名单
+ */
+final class GeneratorFixtures {
+
+    static final Long DAY_SHIFT_ID = 1L;
+    static final Long SHIFT_24H_ID = 3L;
+
+    private GeneratorFixtures() {
+    }
+
+    /**
+     * 随机名单：oncall-A/B和goc组至少各有一人，oncall组员都有1~3号小组（偶尔是不存在的4号），
+     * 约三分之一的人在[from, to]附近有一段User上的请假，名单顺序打乱
+     */
+    static List<User> randomUsers(Random random, ZoneId zone, LocalDate from, LocalDate to) {
+        List<User> users = new ArrayList<>();
+        for (int group = DutyPlanGenerator.GROUP_ONCALL_A; group <= DutyPlanGenerator.GROUP_PM; group++) {
+            int leaders = group == DutyPlanGenerator.GROUP_PM ? 0 : random.nextInt(3);
+            int members;
+            if (group == DutyPlanGenerator.GROUP_GOC) {
+                members = random.nextInt(9);
+            } else if (group == DutyPlanGenerator.GROUP_PM) {
+                members = random.nextInt(4);
+            } else {
+                members = 2 + random.nextInt(9);
+            }
+            if (leaders + members == 0) {
+                members = 1;
+            }
+            for (int i = 0; i < leaders + members; i++) {
+                User user = new User();
+                user.setName("G" + group + "-" + i);
+                user.setGroupId(group);
+                user.setIsGroupLeader(i < leaders);
+                if (i >= leaders && group <= DutyPlanGenerator.GROUP_ONCALL_B) {
+                    user.setSubGroupId(random.nextInt(12) == 0 ? 4 : 1 + random.nextInt(3));
+                }
+                users.add(user);
+            }
+        }
+        Collections.shuffle(users, random);
+        int span = (int) (to.toEpochDay() - from.toEpochDay()) + 1;
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            user.setId((long) (i + 1));
+            if (random.nextInt(3) == 0) {
+                LocalDate start = from.plusDays(random.nextInt(span + 20) - 10);
+                user.setLeaveStartDate(date(start, zone));
+                user.setLeaveEndDate(date(start.plusDays(random.nextInt(15)), zone));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * 请假表中的随机多段请假，每人0~3段，可能互相重叠或相邻
+     */
+    static List<Leave> randomLeaves(Random random, List<User> users, ZoneId zone, LocalDate from, LocalDate to) {
+        int span = (int) (to.toEpochDay() - from.toEpochDay()) + 1;
+        List<Leave> leaves = new ArrayList<>();
+        for (User user : users) {
+            int count = random.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                LocalDate start = from.plusDays(random.nextInt(span + 20) - 10);
+                leaves.add(leave(user.getId(), start, start.plusDays(random.nextInt(12)), zone));
+            }
+        }
+        return leaves;
+    }
+
+    static Leave leave(Long userId, LocalDate start, LocalDate end, ZoneId zone) {
+        Leave leave = new Leave();
+        leave.setUserId(userId);
+        leave.setStartDate(date(start, zone));
+        leave.setEndDate(date(end, zone));
+        return leave;
+    }
+
+    static DutyPlanGenerator generator(List<User> users, List<Leave> leaves, ZoneId zone) {
+        return new DutyPlanGenerator(RosterSnapshot.of(users, leaves, zone), DAY_SHIFT_ID, SHIFT_24H_ID);
+    }
+
+    static Date date(LocalDate day, ZoneId zone) {
+        return Date.from(day.atStartOfDay(zone).toInstant());
+    }
+
+    /**
+     * 逐条比较两次生成的排班（包括顺序），不一致时报告第一条不同的排班
+     */
+    static void assertSamePlans(List<DutyPlan> expected, List<DutyPlan> actual, String context) {
+        int common = Math.min(expected.size(), actual.size());
+        for (int i = 0; i < common; i++) {
+            if (!expected.get(i).equals(actual.get(i))) {
+                fail(context + "：第" + i + "条不同，期望 " + expected.get(i) + "，实际 " + actual.get(i));
+            }
+        }
+        assertEquals(expected.size(), actual.size(), context + "：排班条数不同");
+    }
+}
@@ -0,0 +1,91 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.dto.ResourceVersion;
+import com.duty.system.entity.ChangeLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryChangeBusTest {
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void joinedNodesShareOneSequence() {
+        InMemoryChangeBus a = new InMemoryChangeBus("a");
+        InMemoryChangeBus b = a.join("b");
+        List<ChangeLog> received = new ArrayList<>();
+        b.subscribe(received::add);
+
+        a.publish(ResourceVersion.Resource.USERS);
+        b.publish(ResourceVersion.Resource.PLANS);
+
+        assertEquals(2, received.size());
+        assertEquals("a", received.get(0).getNodeId());
+        assertEquals(1L, received.get(0).getId());
+        assertEquals(2L, received.get(1).getId());
+        assertEquals(a.getEpoch(), b.getEpoch());
+    }
+
+    @Test
+    void subscribeReplaysLatestChangePerResource() {
+        InMemoryChangeBus bus = new InMemoryChangeBus("a");
+        bus.publish(ResourceVersion.Resource.USERS);
+        bus.publish(ResourceVersion.Resource.USERS);
+        bus.publish(ResourceVersion.Resource.CONFIGS);
+
+        List<ChangeLog> replayed = new ArrayList<>();
+        bus.subscribe(replayed::add);
+
+        assertEquals(2, replayed.size());
+        assertEquals(2L, replayed.stream()
+                .filter(c -> c.getResource() == ResourceVersion.Resource.USERS)
+                .findFirst().get().getId());
+    }
+
+    @Test
+    void changeInTransactionIsDeliveredAfterCommit() {
+        InMemoryChangeBus bus = new InMemoryChangeBus("a");
+        List<ChangeLog> received = new ArrayList<>();
+        bus.subscribe(received::add);
+
+        TransactionSynchronizationManager.initSynchronization();
+        bus.publish(ResourceVersion.Resource.USERS);
+        assertTrue(received.isEmpty());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void changeInRolledBackTransactionIsDropped() {
+        InMemoryChangeBus bus = new InMemoryChangeBus("a");
+        List<ChangeLog> received = new ArrayList<>();
+        bus.subscribe(received::add);
+
+        TransactionSynchronizationManager.initSynchronization();
+        bus.publish(ResourceVersion.Resource.USERS);
+        TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertTrue(received.isEmpty());
+        List<ChangeLog> replayed = new ArrayList<>();
+        bus.subscribe(replayed::add);
+        assertTrue(replayed.isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.Leave;
+import com.duty.system.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 请假位图、按区间二分查找和逐段检查三种方式的结果一致
+ */
+class LeaveCalendarTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    @Test
+    void bitmapAndIntervalSearchMatchBruteForce() {
+        for (int seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            LocalDate from = LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365));
+            LocalDate to = from.plusDays(random.nextInt(120));
+            // 超过64人，位图每天占多个long
+            List<User> users = new ArrayList<>();
+            while (users.size() < 70 + random.nextInt(100)) {
+                List<User> more = GeneratorFixtures.randomUsers(random, ZONE, from, to);
+                for (User user : more) {
+                    user.setId(users.size() + 1L);
+                    users.add(user);
+                }
+            }
+            List<Leave> leaves = GeneratorFixtures.randomLeaves(random, users, ZONE, from, to);
+            RosterSnapshot roster = RosterSnapshot.of(users, leaves, ZONE);
+            int fromDay = (int) from.toEpochDay();
+            int toDay = (int) to.toEpochDay();
+            LeaveCalendar calendar = roster.leaveCalendar(fromDay, toDay);
+
+            // 范围前后各多查几天，覆盖退回二分查找的情况
+            for (int u = 0; u < users.size(); u++) {
+                for (int day = fromDay - 15; day <= toDay + 15; day++) {
+                    boolean expected = onLeave(users.get(u), leaves, day);
+                    String context = "seed " + seed + " 用户" + u + " " + LocalDate.ofEpochDay(day);
+                    assertEquals(expected, roster.isOnLeave(u, day), context);
+                    assertEquals(expected, calendar.isOnLeave(u, day), context);
+                }
+            }
+        }
+    }
+
+    @Test
+    void mergeLeaveDaysSortsMergesAndDropsInvalidWindows() {
+        assertArrayEquals(new int[]{1, 9, 20, 25},
+                RosterSnapshot.mergeLeaveDays(new int[]{20, 25, 5, 9, 1, 4, 3, 6, 30, 29}));
+        // 相邻的区间也合并
+        assertArrayEquals(new int[]{1, 10}, RosterSnapshot.mergeLeaveDays(new int[]{6, 10, 1, 5}));
+        assertArrayEquals(new int[0], RosterSnapshot.mergeLeaveDays(new int[]{5, 4}));
+        assertArrayEquals(new int[0], RosterSnapshot.mergeLeaveDays(new int[0]));
+    }
+
+    @Test
+    void mergeLeaveDaysCoversSameDaysAsInput() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            int[] windows = new int[random.nextInt(8) * 2];
+            for (int i = 0; i < windows.length; i += 2) {
+                windows[i] = random.nextInt(60);
+                windows[i + 1] = windows[i] + random.nextInt(10) - 2;
+            }
+            int[] merged = RosterSnapshot.mergeLeaveDays(windows);
+            for (int i = 0; i < merged.length; i += 2) {
+                assertTrue(merged[i] <= merged[i + 1]);
+                // 合并后的区间按开始日排序，互不重叠也不相邻
+                if (i > 0) {
+                    assertTrue(merged[i] > merged[i - 1] + 1);
+                }
+            }
+            for (int day = -5; day < 80; day++) {
+                assertEquals(covers(windows, day), covers(merged, day), "第" + round + "轮 " + day);
+            }
+        }
+    }
+
+    private static boolean onLeave(User user, List<Leave> leaves, int day) {
+        if (user.getLeaveStartDate() != null && user.getLeaveEndDate() != null
+                && epochDay(user.getLeaveStartDate()) <= day && day <= epochDay(user.getLeaveEndDate())) {
+            return true;
+        }
+        for (Leave leave : leaves) {
+            if (leave.getUserId().equals(user.getId())
+                    && epochDay(leave.getStartDate()) <= day && day <= epochDay(leave.getEndDate())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean covers(int[] windows, int day) {
+        for (int i = 0; i < windows.length; i += 2) {
+            if (windows[i] <= day && day <= windows[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int epochDay(Date date) {
+        return (int) date.toInstant().atZone(ZONE).toLocalDate().toEpochDay();
+    }
+}
@@ -0,0 +1,288 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.DutyPlan;
+import com.duty.system.entity.User;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+/**
+ * 改为按天计算之前DutyServiceImpl.generateDutyPlan中的排班逻辑，只去掉了打印、时间段查询和写库，用作对照
+ * 日期计算仍使用Calendar和毫秒差，与原实现一样只在没有夏令时的时区下正确
+ */
+final class LegacyDutyPlanGenerator {
+
+    private static final long DAY_MILLIS = 1000 * 60 * 60 * 24;
+
+    private final TimeZone timeZone;
+    private final Long dayShiftId;
+    private final Long timeSlot24hId;
+
+    LegacyDutyPlanGenerator(TimeZone timeZone, Long dayShiftId, Long timeSlot24hId) {
+        this.timeZone = timeZone;
+        this.dayShiftId = dayShiftId;
+        this.timeSlot24hId = timeSlot24hId;
+    }
+
+    List<DutyPlan> generate(List<User> allUsers, Date startDate, Date endDate) {
+        List<DutyPlan> plans = new ArrayList<>();
+
+        List<User> oncallA = allUsers.stream().filter(user -> user.getGroupId() == 1).collect(Collectors.toList());
+        List<User> oncallB = allUsers.stream().filter(user -> user.getGroupId() == 2).collect(Collectors.toList());
+        List<User> gocGroup = allUsers.stream().filter(user -> user.getGroupId() == 3).collect(Collectors.toList());
+        List<User> pmGroup = allUsers.stream().filter(user -> user.getGroupId() == 4).collect(Collectors.toList());
+
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTime(startDate);
+        Map<Long, Date> userLast24hDutyDate = new HashMap<>();
+
+        while (!calendar.getTime().after(endDate)) {
+            Date currentDate = calendar.getTime();
+            int dayOfPlan = (int) ((calendar.getTimeInMillis() - startDate.getTime()) / DAY_MILLIS);
+
+            List<User> dayAvailableUsers = allUsers.stream()
+                    .filter(user -> canUserWorkOnDate(user, currentDate) && !isResting(user, currentDate, userLast24hDutyDate))
+                    .collect(Collectors.toList());
+
+            List<User> dayOncallA = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 1).collect(Collectors.toList());
+            List<User> dayOncallB = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 2).collect(Collectors.toList());
+            List<User> dayGocGroup = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 3).collect(Collectors.toList());
+            List<User> dayPmGroup = dayAvailableUsers.stream().filter(user -> user.getGroupId() == 4).collect(Collectors.toList());
+
+            User dayOncallALeader = dayOncallA.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
+            User dayOncallBLeader = dayOncallB.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
+            User dayGocLeader = dayGocGroup.stream().filter(User::getIsGroupLeader).findFirst().orElse(null);
+
+            List<User> dayOncallAMembers = dayOncallA.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
+            List<User> dayOncallBMembers = dayOncallB.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
+            List<User> dayGocMembers = dayGocGroup.stream().filter(user -> !user.getIsGroupLeader()).collect(Collectors.toList());
+
+            boolean isAGroupOnDuty = (dayOfPlan / 9) % 2 == 0;
+            List<User> onDutyOncallGroup = isAGroupOnDuty ? dayOncallA : dayOncallB;
+            User onDutyLeader = isAGroupOnDuty ? dayOncallALeader : dayOncallBLeader;
+            User offDutyLeader = isAGroupOnDuty ? dayOncallBLeader : dayOncallALeader;
+            List<User> onDutyMembers = isAGroupOnDuty ? dayOncallAMembers : dayOncallBMembers;
+            List<User> offDutyMembers = isAGroupOnDuty ? dayOncallBMembers : dayOncallAMembers;
+
+            // 大组长
+            User actualOnDutyLeader = onDutyLeader;
+            User actualOffDutyLeader = offDutyLeader;
+            User actualGocLeader = dayGocLeader;
+            if (actualOnDutyLeader == null) {
+                actualOnDutyLeader = offDutyLeader;
+            }
+            if (actualOffDutyLeader == null && actualGocLeader != null) {
+                actualOffDutyLeader = actualGocLeader;
+            }
+            if (actualGocLeader == null && actualOffDutyLeader != null) {
+                actualGocLeader = actualOffDutyLeader;
+            }
+            User oncallALeaderSlot = isAGroupOnDuty ? actualOnDutyLeader : actualOffDutyLeader;
+            User oncallBLeaderSlot = isAGroupOnDuty ? actualOffDutyLeader : actualOnDutyLeader;
+            if (oncallALeaderSlot != null) {
+                plans.add(leaderPlan(oncallALeaderSlot, currentDate, oncallA.get(0).getGroupId()));
+            }
+            if (oncallBLeaderSlot != null) {
+                plans.add(leaderPlan(oncallBLeaderSlot, currentDate, oncallB.get(0).getGroupId()));
+            }
+            if (actualGocLeader != null) {
+                plans.add(leaderPlan(actualGocLeader, currentDate, gocGroup.get(0).getGroupId()));
+            }
+
+            // oncall组员24小时班
+            List<User> on24hDutyUsers = new ArrayList<>();
+            int teamIndex = dayOfPlan % 3 + 1;
+            List<User> currentTeam = new ArrayList<>();
+            for (User user : onDutyMembers) {
+                if (canUserWorkOnDate(user, currentDate) && !isResting(user, currentDate, userLast24hDutyDate)
+                        && user.getSubGroupId() == teamIndex) {
+                    currentTeam.add(user);
+                }
+            }
+            List<User> tempBackupPool = new ArrayList<>(offDutyMembers);
+            List<Long> usedBackupUserIds = new ArrayList<>();
+            while (currentTeam.size() < 2 && !tempBackupPool.isEmpty()) {
+                User backupUser = tempBackupPool.remove(0);
+                if (canUserWorkOnDate(backupUser, currentDate) && !isResting(backupUser, currentDate, userLast24hDutyDate)) {
+                    currentTeam.add(backupUser);
+                    usedBackupUserIds.add(backupUser.getId());
+                }
+            }
+            offDutyMembers.removeIf(user -> usedBackupUserIds.contains(user.getId()));
+            for (User user : currentTeam) {
+                DutyPlan plan = newPlan(user, currentDate, timeSlot24hId, 3);
+                plan.setAssignedSubGroupId(teamIndex);
+                if (offDutyMembers.contains(user)) {
+                    plan.setDutyGroupId(onDutyOncallGroup.get(0).getGroupId());
+                    plan.setDutySubGroupId(teamIndex);
+                }
+                plans.add(plan);
+                userLast24hDutyDate.put(user.getId(), currentDate);
+                on24hDutyUsers.add(user);
+            }
+
+            // 备份池
+            List<User> backupPool = new ArrayList<>();
+            for (User user : offDutyMembers) {
+                if (!containsId(on24hDutyUsers, user)) {
+                    backupPool.add(user);
+                }
+            }
+            if (dayOfPlan % 9 < 3) {
+                for (User user : onDutyMembers) {
+                    if (containsId(backupPool, user) || containsId(on24hDutyUsers, user)) {
+                        continue;
+                    }
+                    boolean hasWorkedInCycle = false;
+                    Date lastDutyDate = userLast24hDutyDate.get(user.getId());
+                    if (lastDutyDate != null) {
+                        Calendar cycleStartCal = Calendar.getInstance(timeZone);
+                        cycleStartCal.setTime(startDate);
+                        cycleStartCal.add(Calendar.DAY_OF_MONTH, (dayOfPlan / 9) * 9);
+                        Date cycleStartDate = cycleStartCal.getTime();
+                        hasWorkedInCycle = lastDutyDate.after(cycleStartDate) || lastDutyDate.equals(cycleStartDate);
+                    }
+                    if (canUserWorkOnDate(user, currentDate) && !hasWorkedInCycle) {
+                        backupPool.add(user);
+                    }
+                }
+            }
+
+            // goc组员白班，前3组每组2人，第4组1人常驻，再用备份池补充
+            List<List<User>> gocTeams = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                gocTeams.add(new ArrayList<>());
+            }
+            List<User> tempGocMembers = new ArrayList<>(dayGocMembers);
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 2 && !tempGocMembers.isEmpty(); j++) {
+                    gocTeams.get(i).add(tempGocMembers.remove(0));
+                }
+            }
+            if (!tempGocMembers.isEmpty()) {
+                gocTeams.get(3).add(tempGocMembers.remove(0));
+            }
+            List<User> remainingBackup = new ArrayList<>(backupPool);
+            while (gocTeams.get(3).size() < 3 && !remainingBackup.isEmpty()) {
+                gocTeams.get(3).add(remainingBackup.remove(0));
+            }
+            for (int teamNum = 0; teamNum < 3 && !remainingBackup.isEmpty(); teamNum++) {
+                while (gocTeams.get(teamNum).size() < 3 && !remainingBackup.isEmpty()) {
+                    gocTeams.get(teamNum).add(remainingBackup.remove(0));
+                }
+            }
+            for (int j = 0; j < gocTeams.size(); j++) {
+                for (User user : gocTeams.get(j)) {
+                    DutyPlan plan = newPlan(user, currentDate, dayShiftId, 1);
+                    plan.setAssignedSubGroupId(j + 1);
+                    if (!gocGroup.contains(user)) {
+                        plan.setDutyGroupId(gocGroup.get(0).getGroupId());
+                        plan.setDutySubGroupId(j + 1);
+                    }
+                    plans.add(plan);
+                }
+            }
+
+            // pm组白班，再用剩余的备份池补充
+            for (User pmUser : dayPmGroup) {
+                plans.add(newPlan(pmUser, currentDate, dayShiftId, 1));
+            }
+            for (User user : remainingBackup) {
+                if (!canUserWorkOnDate(user, currentDate)) {
+                    continue;
+                }
+                boolean isAlreadyAssigned = false;
+                for (DutyPlan plan : plans) {
+                    if (plan.getDate().equals(currentDate) && plan.getUserId().equals(user.getId())) {
+                        isAlreadyAssigned = true;
+                        break;
+                    }
+                }
+                if (isAlreadyAssigned) {
+                    continue;
+                }
+                DutyPlan pmPlan = newPlan(user, currentDate, dayShiftId, 1);
+                if (!pmGroup.contains(user) && !pmGroup.isEmpty()) {
+                    pmPlan.setDutyGroupId(pmGroup.get(0).getGroupId());
+                }
+                plans.add(pmPlan);
+            }
+
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return plans;
+    }
+
+    private DutyPlan leaderPlan(User leader, Date date, Integer slotGroupId) {
+        DutyPlan plan = newPlan(leader, date, dayShiftId, 1);
+        if (!leader.getGroupId().equals(slotGroupId)) {
+            plan.setDutyGroupId(slotGroupId);
+        }
+        return plan;
+    }
+
+    private DutyPlan newPlan(User user, Date date, Long timeSlotId, int type) {
+        DutyPlan plan = new DutyPlan();
+        plan.setUserId(user.getId());
+        plan.setDate(date);
+        plan.setTimeSlotId(timeSlotId);
+        plan.setType(type);
+        plan.setStatus(1);
+        return plan;
+    }
+
+    // 只有oncall组上24小时班后需要休息，距离上次24小时班不足3天时不可用
+    private boolean isResting(User user, Date date, Map<Long, Date> userLast24hDutyDate) {
+        if (user.getGroupId() != 1 && user.getGroupId() != 2) {
+            return false;
+        }
+        Date lastDutyDate = userLast24hDutyDate.get(user.getId());
+        return lastDutyDate != null && (date.getTime() - lastDutyDate.getTime()) / DAY_MILLIS < 3;
+    }
+
+    private static boolean containsId(List<User> users, User user) {
+        for (User other : users) {
+            if (other.getId().equals(user.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canUserWorkOnDate(User user, Date date) {
+        Date leaveStart = user.getLeaveStartDate();
+        Date leaveEnd = user.getLeaveEndDate();
+        if (leaveStart == null || leaveEnd == null) {
+            return true;
+        }
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        Date checkDate = calendar.getTime();
+
+        Calendar leaveStartCal = Calendar.getInstance(timeZone);
+        leaveStartCal.setTime(leaveStart);
+        leaveStartCal.set(Calendar.HOUR_OF_DAY, 0);
+        leaveStartCal.set(Calendar.MINUTE, 0);
+        leaveStartCal.set(Calendar.SECOND, 0);
+        Date adjustedLeaveStart = leaveStartCal.getTime();
+
+        Calendar leaveEndCal = Calendar.getInstance(timeZone);
+        leaveEndCal.setTime(leaveEnd);
+        leaveEndCal.set(Calendar.HOUR_OF_DAY, 23);
+        leaveEndCal.set(Calendar.MINUTE, 59);
+        leaveEndCal.set(Calendar.SECOND, 59);
+        Date adjustedLeaveEnd = leaveEndCal.getTime();
+
+        return !(checkDate.after(adjustedLeaveStart) && checkDate.before(adjustedLeaveEnd))
+                && !checkDate.equals(adjustedLeaveStart) && !checkDate.equals(adjustedLeaveEnd);
+    }
+}
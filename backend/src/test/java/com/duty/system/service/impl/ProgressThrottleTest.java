@@ -0,0 +1,44 @@
+package com.duty.system.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressThrottleTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void reportsOnlyWhenPercentChanges() {
+        ProgressThrottle throttle = new ProgressThrottle(1000, 0);
+        int reports = 0;
+        for (int done = 1; done <= 1000; done++) {
+            if (throttle.shouldReport(done, done * MS)) {
+                reports++;
+            }
+        }
+        // 0%（第1天）到100%各一次
+        assertEquals(101, reports);
+    }
+
+    @Test
+    void respectsMinIntervalButAlwaysReportsCompletion() {
+        ProgressThrottle throttle = new ProgressThrottle(100, 200);
+        assertTrue(throttle.shouldReport(1, 0));
+        assertFalse(throttle.shouldReport(2, 50 * MS));
+        assertTrue(throttle.shouldReport(3, 250 * MS));
+        assertFalse(throttle.shouldReport(50, 300 * MS));
+        assertTrue(throttle.shouldReport(100, 310 * MS));
+        assertFalse(throttle.shouldReport(100, 900 * MS));
+    }
+
+    @Test
+    void ignoresOutOfOrderProgress() {
+        ProgressThrottle throttle = new ProgressThrottle(10, 0);
+        assertTrue(throttle.shouldReport(5, 0));
+        assertFalse(throttle.shouldReport(4, MS));
+        assertTrue(throttle.shouldReport(6, 2 * MS));
+    }
+}
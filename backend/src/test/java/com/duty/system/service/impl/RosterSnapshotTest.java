@@ -0,0 +1,80 @@
+package com.duty.system.service.impl;
+
+import com.duty.system.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 名单快照中各大组的组员和大组长与直接扫描全部用户的结果一致，构建后与User实体无关
+ */
+class RosterSnapshotTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    @Test
+    void membersAndLeadersMatchFullScan() {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            LocalDate day = LocalDate.of(2025, 1, 1);
+            List<User> users = GeneratorFixtures.randomUsers(random, ZONE, day, day.plusDays(30));
+            // 再加几个不在已知大组里的用户，以及pm组标了大组长的用户
+            users.add(user(users.size() + 1L, 0, false));
+            users.add(user(users.size() + 1L, 7, true));
+            users.add(user(users.size() + 1L, DutyPlanGenerator.GROUP_PM, true));
+
+            RosterSnapshot roster = RosterSnapshot.of(users, ZONE);
+            assertEquals(users.size(), roster.size());
+            for (int group = DutyPlanGenerator.GROUP_ONCALL_A; group <= DutyPlanGenerator.GROUP_PM; group++) {
+                assertArrayEquals(scan(users, group, false), roster.members(group), "seed " + seed + " 大组" + group + "组员");
+                assertArrayEquals(scan(users, group, true), roster.leaders(group), "seed " + seed + " 大组" + group + "大组长");
+            }
+        }
+    }
+
+    @Test
+    void snapshotIsDetachedFromUsers() {
+        List<User> users = new ArrayList<>();
+        users.add(user(1L, DutyPlanGenerator.GROUP_ONCALL_A, true));
+        users.add(user(2L, DutyPlanGenerator.GROUP_ONCALL_A, false));
+        RosterSnapshot roster = RosterSnapshot.of(users, ZONE);
+
+        users.get(0).setGroupId(DutyPlanGenerator.GROUP_GOC);
+        users.get(1).setIsGroupLeader(true);
+        users.add(user(3L, DutyPlanGenerator.GROUP_ONCALL_A, false));
+
+        assertEquals(2, roster.size());
+        assertArrayEquals(new int[]{0}, roster.leaders(DutyPlanGenerator.GROUP_ONCALL_A));
+        assertArrayEquals(new int[]{1}, roster.members(DutyPlanGenerator.GROUP_ONCALL_A));
+        assertArrayEquals(new int[0], roster.members(DutyPlanGenerator.GROUP_GOC));
+    }
+
+    // 按名单顺序逐个扫描，pm组不区分大组长
+    private static int[] scan(List<User> users, int group, boolean leaders) {
+        List<Integer> found = new ArrayList<>();
+        for (int u = 0; u < users.size(); u++) {
+            User user = users.get(u);
+            boolean leader = user.getIsGroupLeader() && group != DutyPlanGenerator.GROUP_PM;
+            if (user.getGroupId() == group && leader == leaders) {
+                found.add(u);
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static User user(Long id, int group, boolean leader) {
+        User user = new User();
+        user.setId(id);
+        user.setName("U" + id);
+        user.setGroupId(group);
+        user.setIsGroupLeader(leader);
+        return user;
+    }
+}